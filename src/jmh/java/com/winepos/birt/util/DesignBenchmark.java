@@ -0,0 +1,65 @@
+package com.winepos.birt.util;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.report.model.api.ReportDesignHandle;
+import org.eclipse.birt.report.model.api.activity.SemanticException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the design element tree for tables of different widths. The
+ * platform is started once per fork, so this measures the design only.
+ * Set -Dbirt.home to use a BIRT runtime other than the one on the classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DesignBenchmark {
+	@Param({ "10", "100", "500" })
+	public int columns;
+
+	private ReportDesignService service;
+	private TableMetadata metadata;
+
+	@Setup
+	public void setUp() throws BirtException {
+		service = new ReportDesignService(System.getProperty("birt.home",
+			System.getProperty("java.io.tmpdir")));
+		final List<ColumnInfo> columnInfos = new ArrayList<ColumnInfo>();
+		for (int i = 0; i < columns; i++) {
+			columnInfos.add(new ColumnInfo("column_" + i,
+					i % 2 == 0 ? Types.INTEGER : Types.VARCHAR, i % 2 == 0 ? "int4" : "text"));
+		}
+		metadata = new TableMetadata("inventory", columnInfos);
+	}
+
+	@TearDown
+	public void tearDown() {
+		service.shutdown();
+	}
+
+	@Benchmark
+	public ReportDesignHandle buildDesign() throws SemanticException {
+		final ReportDesignHandle design = service.buildDesign(metadata);
+		design.close();
+		return design;
+	}
+}
@@ -0,0 +1,83 @@
+package com.winepos.birt.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Logger throughput to a file, to stdout and through the asynchronous writer.
+ * Stdout is swapped for a stream that discards everything so the benchmark
+ * measures the logger rather than the console.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggerBenchmark {
+	private File logFile;
+	private File asyncLogFile;
+	private Logger fileLogger;
+	private Logger stdoutLogger;
+	private Logger asyncLogger;
+	private PrintStream stdout;
+
+	@Setup
+	public void setUp() throws IOException {
+		logFile = File.createTempFile("bench", ".log");
+		asyncLogFile = File.createTempFile("bench-async", ".log");
+		fileLogger = new Logger(logFile.getPath(), false, "suffix");
+		stdoutLogger = new Logger(null, false, "suffix");
+		asyncLogger = new Logger(asyncLogFile.getPath(), false, "suffix",
+				AsyncLogWriter.getInstance(asyncLogFile.getPath(), 8192,
+					AsyncLogWriter.OverflowPolicy.BLOCK, 256));
+		stdout = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(final int b) {
+			}
+
+			@Override
+			public void write(final byte[] b, final int off, final int len) {
+			}
+		}));
+	}
+
+	@TearDown
+	public void tearDown() {
+		System.setOut(stdout);
+		asyncLogger.writer.shutdown(10000L);
+		logFile.delete();
+		asyncLogFile.delete();
+	}
+
+	@Benchmark
+	public void file() {
+		fileLogger.log("Checked out connection 42 in 17ms");
+	}
+
+	@Benchmark
+	public void stdout() {
+		stdoutLogger.log("Checked out connection 42 in 17ms");
+	}
+
+	@Benchmark
+	public void async() {
+		asyncLogger.log("Checked out connection 42 in 17ms");
+	}
+}
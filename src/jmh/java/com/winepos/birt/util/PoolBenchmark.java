@@ -0,0 +1,77 @@
+package com.winepos.birt.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Checkout and return of a pooled connection against an in-memory H2
+ * database, with more and more threads competing for the same pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolBenchmark {
+	@Param({ "8" })
+	public int maxSize;
+
+	private DbConnectionPool pool;
+
+	@Setup
+	public void setUp() throws ClassNotFoundException, SQLException {
+		pool = new DbConnectionPool("org.h2.Driver", "jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1", "sa",
+				"", maxSize, maxSize, 30000L);
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		pool.shutdown();
+	}
+
+	private Connection borrow() throws SQLException {
+		final Connection connection = pool.getConnection(8, false, true);
+		connection.close();
+		return connection;
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Connection threads1() throws SQLException {
+		return borrow();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Connection threads4() throws SQLException {
+		return borrow();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public Connection threads16() throws SQLException {
+		return borrow();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Connection threadsMax() throws SQLException {
+		return borrow();
+	}
+}
@@ -0,0 +1,97 @@
+package com.winepos.birt.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading SQL resources and filling in their placeholders, both the way
+ * {@link SqlTemplate} does it and with one {@code String.replace} per key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlBenchmark {
+	@Param({ "10", "100" })
+	public int placeholders;
+
+	private File directory;
+	private File file;
+	private String sql;
+	private SqlTemplate template;
+	private SqlResourceCache cache;
+	private Map<String, String> replacements;
+
+	@Setup
+	public void setUp() throws IOException {
+		final StringBuilder sb = new StringBuilder("select * from {table} where 1 = 1");
+		replacements = new HashMap<String, String>();
+		replacements.put("table", "inventory");
+		for (int i = 0; i < placeholders; i++) {
+			sb.append("\n  and column_").append(i).append(" = {value").append(i).append('}');
+			replacements.put("value" + i, Integer.toString(i));
+		}
+		sql = sb.toString();
+		template = new SqlTemplate(sql);
+		directory = Files.createTempDirectory("sql").toFile();
+		file = new File(directory, "query.sql");
+		Files.write(file.toPath(), sql.getBytes(StandardCharsets.UTF_8));
+		cache = new SqlResourceCache(directory, 1000L);
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+		directory.delete();
+	}
+
+	@Benchmark
+	public String fileToString() throws IOException {
+		return DbInterface.fileToString(file);
+	}
+
+	@Benchmark
+	public SqlTemplate parse() {
+		return new SqlTemplate(sql);
+	}
+
+	@Benchmark
+	public String fill() {
+		return template.fill(replacements);
+	}
+
+	@Benchmark
+	public String replace() {
+		String result = sql;
+		for (final Map.Entry<String, String> entry : replacements.entrySet()) {
+			result = result.replace(DbInterface.getQueryReplacementKey(entry.getKey()),
+				entry.getValue());
+		}
+		return result;
+	}
+
+	@Benchmark
+	public String cachedFill() throws IOException {
+		return cache.get("query.sql").fill(replacements);
+	}
+}
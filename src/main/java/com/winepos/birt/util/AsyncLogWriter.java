@@ -0,0 +1,324 @@
+package com.winepos.birt.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes log records for one file, or standard output, on a background thread.
+ * Callers only put records on a bounded queue; the writer thread keeps the
+ * file open, formats the records and flushes once per batch.
+ */
+public class AsyncLogWriter {
+	public enum OverflowPolicy {
+		/** Callers wait for room in the queue. */
+		BLOCK,
+		/** The record being logged is dropped. */
+		DROP_NEWEST,
+		/** The oldest queued record is dropped to make room. */
+		DROP_OLDEST
+	}
+
+	private static final ConcurrentMap<String, AsyncLogWriter> WRITERS;
+	private static final Record SHUTDOWN;
+	private final String key;
+	private final String logFilename;
+	private final BlockingQueue<Record> queue;
+	private final OverflowPolicy overflowPolicy;
+	private final int batchSize;
+	private final AtomicLong dropped;
+	private final AtomicLong written;
+	private final Thread thread;
+	private volatile boolean shutdown;
+	/** Set by the writer thread before its last look at the queue. */
+	private volatile boolean stopped;
+	static {
+		WRITERS = new ConcurrentHashMap<String, AsyncLogWriter>();
+		SHUTDOWN = new Record(0L, null, null, null, null);
+		Runtime.getRuntime().addShutdownHook(new Thread("AsyncLogWriter shutdown") {
+			@Override
+			public void run() {
+				AsyncLogWriter.shutdownAll(5000L);
+			}
+		});
+	}
+
+	/**
+	 * Returns the writer for the given file, starting it if necessary. The queue
+	 * settings only apply to the first call for a file.
+	 *
+	 * @param logFilename the file to append to, or null for standard output
+	 */
+	public static AsyncLogWriter getInstance(final String logFilename, final int queueSize,
+			final OverflowPolicy overflowPolicy, final int batchSize) {
+		final String key = logFilename == null ? "" : new File(logFilename).getAbsolutePath();
+		AsyncLogWriter writer = WRITERS.get(key);
+		if (writer == null) {
+			synchronized (WRITERS) {
+				writer = WRITERS.get(key);
+				if (writer == null) {
+					writer = new AsyncLogWriter(key, logFilename, queueSize, overflowPolicy,
+							batchSize);
+					WRITERS.put(key, writer);
+				}
+			}
+		}
+		return writer;
+	}
+
+	/**
+	 * Flushes and stops every writer, waiting up to {@code timeout} milliseconds
+	 * for each one.
+	 */
+	public static void shutdownAll(final long timeout) {
+		for (final AsyncLogWriter writer : WRITERS.values()) {
+			writer.shutdown(timeout);
+		}
+	}
+
+	private AsyncLogWriter(final String key, final String logFilename, final int queueSize,
+			final OverflowPolicy overflowPolicy, final int batchSize) {
+		this.key = key;
+		this.logFilename = logFilename;
+		this.queue = new ArrayBlockingQueue<Record>(Math.max(queueSize, 1));
+		this.overflowPolicy = overflowPolicy == null ? OverflowPolicy.BLOCK : overflowPolicy;
+		this.batchSize = Math.max(batchSize, 1);
+		this.dropped = new AtomicLong();
+		this.written = new AtomicLong();
+		this.shutdown = false;
+		this.stopped = false;
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				AsyncLogWriter.this.writeLoop();
+			}
+		}, "AsyncLogWriter " + (logFilename == null ? "stdout" : logFilename));
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	public void append(final long timestamp, final Object message, final Object details,
+			final Throwable t, final String suffix) {
+		final Record record = new Record(timestamp, String.valueOf(message),
+				details == null ? null : String.valueOf(details), t, suffix);
+		if (this.shutdown) {
+			this.writeDirectly(record);
+			return;
+		}
+		switch (this.overflowPolicy) {
+			case DROP_NEWEST:
+				if (!this.queue.offer(record)) {
+					this.dropped.incrementAndGet();
+				}
+				break;
+			case DROP_OLDEST:
+				while (!this.queue.offer(record)) {
+					if (this.queue.poll() != null) {
+						this.dropped.incrementAndGet();
+					}
+				}
+				break;
+			default:
+				try {
+					while (!this.queue.offer(record, 100L, TimeUnit.MILLISECONDS)) {
+						if (this.stopped) {
+							this.writeDirectly(record);
+							return;
+						}
+					}
+				}
+				catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					this.writeDirectly(record);
+					return;
+				}
+				break;
+		}
+		if (this.stopped) {
+			// Queued after the writer's last look at the queue.
+			this.writeQueuedDirectly();
+		}
+	}
+
+	/**
+	 * Stops the writer once it has written what is queued, waiting up to
+	 * {@code timeout} milliseconds. Later calls to {@link #getInstance} start a
+	 * new writer for the file.
+	 */
+	public void shutdown(final long timeout) {
+		if (this.shutdown) {
+			return;
+		}
+		this.shutdown = true;
+		WRITERS.remove(this.key, this);
+		final long deadline = System.currentTimeMillis() + timeout;
+		try {
+			if (!this.queue.offer(SHUTDOWN, timeout, TimeUnit.MILLISECONDS)) {
+				// The queue stayed full; the writer stops once it is idle.
+				this.thread.interrupt();
+			}
+			this.thread.join(Math.max(deadline - System.currentTimeMillis(), 1L));
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public long getDroppedCount() {
+		return this.dropped.get();
+	}
+
+	public long getWrittenCount() {
+		return this.written.get();
+	}
+
+	public int getQueueSize() {
+		return this.queue.size();
+	}
+
+	private void writeLoop() {
+		final DateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS ");
+		final List<Record> batch = new ArrayList<Record>(this.batchSize);
+		PrintWriter out = null;
+		boolean running = true;
+		while (running) {
+			try {
+				batch.add(this.queue.take());
+				this.queue.drainTo(batch, this.batchSize - 1);
+			}
+			catch (final InterruptedException e) {
+				// only shutdown stops the writer
+				running = !this.shutdown;
+			}
+			try {
+				if (out == null) {
+					out = this.open();
+				}
+				final long dropped = this.dropped.getAndSet(0L);
+				if (dropped > 0L) {
+					out.print(df.format(new Date()));
+					out.print(" ");
+					out.println("AsyncLogWriter: dropped " + dropped + " log records");
+				}
+				int count = 0;
+				for (final Record record : batch) {
+					if (record == SHUTDOWN) {
+						running = false;
+						continue;
+					}
+					this.format(out, df, record);
+					count++;
+				}
+				out.flush();
+				this.written.addAndGet(count);
+				if (out.checkError()) {
+					throw new IOException("Error writing log");
+				}
+			}
+			catch (final IOException | RuntimeException e) {
+				System.out.println("Logger: Unable to log " + batch.size() + " records to "
+					+ this.logFilename);
+				e.printStackTrace();
+				this.close(out);
+				out = null;
+			}
+			batch.clear();
+		}
+		this.stopped = true;
+		// records appended while the writer was stopping
+		this.writeQueuedDirectly();
+		this.close(out);
+	}
+
+	private void writeQueuedDirectly() {
+		Record record;
+		while ((record = this.queue.poll()) != null) {
+			if (record != SHUTDOWN) {
+				this.writeDirectly(record);
+			}
+		}
+	}
+
+	private PrintWriter open() throws IOException {
+		if (this.logFilename == null) {
+			return new PrintWriter(System.out);
+		}
+		return new PrintWriter(new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(this.logFilename, true))));
+	}
+
+	private void close(final PrintWriter out) {
+		if (out == null) {
+			return;
+		}
+		if (this.logFilename == null) {
+			out.flush();
+		}
+		else {
+			out.close();
+		}
+	}
+
+	private void writeDirectly(final Record record) {
+		new Logger(this.logFilename, false, record.suffix).log(record.message, record.details,
+			record.t, true);
+	}
+
+	private void format(final PrintWriter out, final DateFormat df, final Record record) {
+		out.print(df.format(new Date(record.timestamp)));
+		out.print(" ");
+		if (this.logFilename == null) {
+			out.print(record.message);
+			if (record.suffix != null) {
+				out.print(" ");
+				out.print(record.suffix);
+			}
+			out.println();
+		}
+		else {
+			out.println(record.message);
+			if (record.suffix != null) {
+				out.print(" ");
+				out.print(record.suffix);
+				out.println();
+			}
+		}
+		if (record.details != null) {
+			out.println(record.details);
+		}
+		if (record.t != null) {
+			record.t.printStackTrace(out);
+		}
+	}
+
+	private static final class Record {
+		final long timestamp;
+		final String message;
+		final String details;
+		final Throwable t;
+		final String suffix;
+
+		Record(final long timestamp, final String message, final String details,
+				final Throwable t, final String suffix) {
+			this.timestamp = timestamp;
+			this.message = message;
+			this.details = details;
+			this.t = t;
+			this.suffix = suffix;
+		}
+	}
+}
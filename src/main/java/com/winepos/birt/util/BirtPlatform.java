@@ -0,0 +1,27 @@
+package com.winepos.birt.util;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.framework.Platform;
+import org.eclipse.birt.core.framework.PlatformConfig;
+
+/**
+ * Reference counts the BIRT platform so that the design and render services
+ * can share it and the last one to shut down stops it.
+ */
+final class BirtPlatform {
+	private static int users = 0;
+
+	private BirtPlatform() {
+	}
+
+	static synchronized void startup(final PlatformConfig config) throws BirtException {
+		Platform.startup(config);
+		users++;
+	}
+
+	static synchronized void shutdown() {
+		if (users > 0 && --users == 0) {
+			Platform.shutdown();
+		}
+	}
+}
@@ -0,0 +1,1723 @@
+package com.winepos.birt.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Forward only, read only result set over rows that {@link ResultCache} holds
+ * encoded in a byte array. Only the current row is decoded. Values come back
+ * as the driver's {@code getObject} and {@code getString} returned them when
+ * the rows were cached, and the other getters convert them the way drivers
+ * commonly do.
+ */
+public class CachedResultSet implements ResultSet {
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte INT = 2;
+	private static final byte LONG = 3;
+	private static final byte DOUBLE = 4;
+	private static final byte BIG_DECIMAL = 5;
+	private static final byte BOOLEAN = 6;
+	private static final byte TIMESTAMP = 7;
+	private static final byte DATE = 8;
+	private static final byte TIME = 9;
+	private static final byte BYTES = 10;
+	private static final byte SHORT = 11;
+	private static final byte FLOAT = 12;
+	private static final byte BYTE = 13;
+	private static final byte SERIALIZED = 14;
+	private static final byte UUID = 15;
+	/**
+	 * Set in a value's type when the driver's {@code getString} text follows the
+	 * value because it differs from the value's {@code toString()}.
+	 */
+	private static final int WITH_STRING = 0x40;
+	private final MetaData metaData;
+	private final DataInputStream in;
+	private final int rowCount;
+	private final Object[] row;
+	private final String[] strings;
+	private int rowNumber;
+	private boolean wasNull;
+	private boolean closed;
+
+	CachedResultSet(final MetaData metaData, final byte[] rows, final int rowCount) {
+		this.metaData = metaData;
+		this.in = new DataInputStream(new ByteArrayInputStream(rows));
+		this.rowCount = rowCount;
+		this.row = new Object[metaData.getColumnCount()];
+		this.strings = new String[this.row.length];
+		this.rowNumber = 0;
+	}
+
+	/**
+	 * Appends the current row of {@code resultSet}.
+	 *
+	 * @return false if a value is of a type that cannot be cached, in which case
+	 *         {@code out} holds part of the row
+	 */
+	static boolean writeRow(final ResultSet resultSet, final int columnCount,
+			final DataOutput out) throws SQLException, IOException {
+		for (int i = 1; i <= columnCount; i++) {
+			final Object value = resultSet.getObject(i);
+			String string = null;
+			if (value != null && !(value instanceof String)) {
+				// Drivers format booleans, timestamps, doubles and binary their own
+				// way.
+				string = resultSet.getString(i);
+				if (string != null && string.equals(value.toString())) {
+					string = null;
+				}
+			}
+			if (!writeValue(value, string == null ? 0 : WITH_STRING, out)) {
+				return false;
+			}
+			if (string != null) {
+				writeBytes(string.getBytes(StandardCharsets.UTF_8), out);
+			}
+		}
+		return true;
+	}
+
+	private static boolean writeValue(final Object value, final int flags, final DataOutput out)
+			throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		}
+		else if (value instanceof String) {
+			out.writeByte(STRING | flags);
+			writeBytes(((String) value).getBytes(StandardCharsets.UTF_8), out);
+		}
+		else if (value instanceof Integer) {
+			out.writeByte(INT | flags);
+			out.writeInt(((Integer) value).intValue());
+		}
+		else if (value instanceof Long) {
+			out.writeByte(LONG | flags);
+			out.writeLong(((Long) value).longValue());
+		}
+		else if (value instanceof Double) {
+			out.writeByte(DOUBLE | flags);
+			out.writeDouble(((Double) value).doubleValue());
+		}
+		else if (value instanceof BigDecimal) {
+			final BigDecimal decimal = (BigDecimal) value;
+			out.writeByte(BIG_DECIMAL | flags);
+			out.writeInt(decimal.scale());
+			writeBytes(decimal.unscaledValue().toByteArray(), out);
+		}
+		else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN | flags);
+			out.writeBoolean(((Boolean) value).booleanValue());
+		}
+		else if (value instanceof Timestamp) {
+			final Timestamp timestamp = (Timestamp) value;
+			out.writeByte(TIMESTAMP | flags);
+			out.writeLong(timestamp.getTime());
+			out.writeInt(timestamp.getNanos());
+		}
+		else if (value instanceof Date) {
+			out.writeByte(DATE | flags);
+			out.writeLong(((Date) value).getTime());
+		}
+		else if (value instanceof Time) {
+			out.writeByte(TIME | flags);
+			out.writeLong(((Time) value).getTime());
+		}
+		else if (value instanceof byte[]) {
+			out.writeByte(BYTES | flags);
+			writeBytes((byte[]) value, out);
+		}
+		else if (value instanceof Short) {
+			out.writeByte(SHORT | flags);
+			out.writeShort(((Short) value).shortValue());
+		}
+		else if (value instanceof Float) {
+			out.writeByte(FLOAT | flags);
+			out.writeFloat(((Float) value).floatValue());
+		}
+		else if (value instanceof Byte) {
+			out.writeByte(BYTE | flags);
+			out.writeByte(((Byte) value).byteValue());
+		}
+		else if (value instanceof java.util.UUID) {
+			final java.util.UUID uuid = (java.util.UUID) value;
+			out.writeByte(UUID | flags);
+			out.writeLong(uuid.getMostSignificantBits());
+			out.writeLong(uuid.getLeastSignificantBits());
+		}
+		else if (value instanceof Serializable) {
+			// java.time values and the like; rare enough not to need a compact
+			// form.
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+			objectOut.writeObject(value);
+			objectOut.close();
+			out.writeByte(SERIALIZED | flags);
+			writeBytes(bytes.toByteArray(), out);
+		}
+		else {
+			// LOBs, arrays and other values tied to the connection.
+			return false;
+		}
+		return true;
+	}
+
+	private static void writeBytes(final byte[] bytes, final DataOutput out) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static Object readValue(final int type, final DataInput in) throws IOException {
+		switch (type) {
+		case NULL:
+			return null;
+		case STRING:
+			return new String(readBytes(in), StandardCharsets.UTF_8);
+		case INT:
+			return Integer.valueOf(in.readInt());
+		case LONG:
+			return Long.valueOf(in.readLong());
+		case DOUBLE:
+			return Double.valueOf(in.readDouble());
+		case BIG_DECIMAL:
+			final int scale = in.readInt();
+			return new BigDecimal(new BigInteger(readBytes(in)), scale);
+		case BOOLEAN:
+			return Boolean.valueOf(in.readBoolean());
+		case TIMESTAMP:
+			final Timestamp timestamp = new Timestamp(in.readLong());
+			timestamp.setNanos(in.readInt());
+			return timestamp;
+		case DATE:
+			return new Date(in.readLong());
+		case TIME:
+			return new Time(in.readLong());
+		case BYTES:
+			return readBytes(in);
+		case SHORT:
+			return Short.valueOf(in.readShort());
+		case FLOAT:
+			return Float.valueOf(in.readFloat());
+		case BYTE:
+			return Byte.valueOf(in.readByte());
+		case UUID:
+			return new java.util.UUID(in.readLong(), in.readLong());
+		case SERIALIZED:
+			final ObjectInputStream objectIn = new ObjectInputStream(
+					new ByteArrayInputStream(readBytes(in)));
+			try {
+				return objectIn.readObject();
+			}
+			catch (final ClassNotFoundException e) {
+				throw new IOException(e);
+			}
+			finally {
+				objectIn.close();
+			}
+		default:
+			throw new IOException("Unknown value type " + type);
+		}
+	}
+
+	private static byte[] readBytes(final DataInput in) throws IOException {
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	private static SQLException readOnly() {
+		return new SQLFeatureNotSupportedException("Cached result sets are read only");
+	}
+
+	private static SQLException forwardOnly() {
+		return new SQLFeatureNotSupportedException("Cached result sets are forward only");
+	}
+
+	private static SQLException notSupported(final Object value, final String type) {
+		return new SQLException("Cannot convert " + value.getClass().getName() + " to " + type);
+	}
+
+	private void checkOpen() throws SQLException {
+		if (this.closed) {
+			throw new SQLException("Result set is closed");
+		}
+	}
+
+	/**
+	 * Also records whether the value was null for {@link #wasNull()}.
+	 */
+	private Object value(final int columnIndex) throws SQLException {
+		this.checkOpen();
+		if (this.rowNumber < 1 || this.rowNumber > this.rowCount) {
+			throw new SQLException("Not on a row");
+		}
+		if (columnIndex < 1 || columnIndex > this.row.length) {
+			throw new SQLException("Invalid column index " + columnIndex);
+		}
+		final Object value = this.row[columnIndex - 1];
+		this.wasNull = value == null;
+		return value;
+	}
+
+	@Override
+	public boolean next() throws SQLException {
+		this.checkOpen();
+		if (this.rowNumber >= this.rowCount) {
+			this.rowNumber = this.rowCount + 1;
+			return false;
+		}
+		try {
+			for (int i = 0; i < this.row.length; i++) {
+				final int type = this.in.readByte();
+				this.row[i] = CachedResultSet.readValue(type & ~WITH_STRING, this.in);
+				this.strings[i] = (type & WITH_STRING) == 0 ? null
+					: new String(CachedResultSet.readBytes(this.in), StandardCharsets.UTF_8);
+			}
+		}
+		catch (final IOException e) {
+			throw new SQLException("Unable to read cached row", e);
+		}
+		this.rowNumber++;
+		return true;
+	}
+
+	@Override
+	public void close() {
+		this.closed = true;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	@Override
+	public boolean wasNull() {
+		return this.wasNull;
+	}
+
+	@Override
+	public ResultSetMetaData getMetaData() {
+		return this.metaData;
+	}
+
+	@Override
+	public int findColumn(final String columnLabel) throws SQLException {
+		return this.metaData.findColumn(columnLabel);
+	}
+
+	@Override
+	public Object getObject(final int columnIndex) throws SQLException {
+		return this.value(columnIndex);
+	}
+
+	@Override
+	public Object getObject(final String columnLabel) throws SQLException {
+		return this.getObject(this.findColumn(columnLabel));
+	}
+
+	@Override
+	public Object getObject(final int columnIndex, final Map<String, Class<?>> map)
+			throws SQLException {
+		if (map != null && !map.isEmpty()) {
+			throw new SQLFeatureNotSupportedException("Type maps are not supported");
+		}
+		return this.getObject(columnIndex);
+	}
+
+	@Override
+	public Object getObject(final String columnLabel, final Map<String, Class<?>> map)
+			throws SQLException {
+		return this.getObject(this.findColumn(columnLabel), map);
+	}
+
+	@Override
+	public <T> T getObject(final int columnIndex, final Class<T> type) throws SQLException {
+		final Object value = this.value(columnIndex);
+		if (value == null || type.isInstance(value)) {
+			return type.cast(value);
+		}
+		final Object converted;
+		if (type == String.class) {
+			converted = this.getString(columnIndex);
+		}
+		else if (type == Integer.class) {
+			converted = Integer.valueOf(this.getInt(columnIndex));
+		}
+		else if (type == Long.class) {
+			converted = Long.valueOf(this.getLong(columnIndex));
+		}
+		else if (type == Short.class) {
+			converted = Short.valueOf(this.getShort(columnIndex));
+		}
+		else if (type == Byte.class) {
+			converted = Byte.valueOf(this.getByte(columnIndex));
+		}
+		else if (type == Double.class) {
+			converted = Double.valueOf(this.getDouble(columnIndex));
+		}
+		else if (type == Float.class) {
+			converted = Float.valueOf(this.getFloat(columnIndex));
+		}
+		else if (type == Boolean.class) {
+			converted = Boolean.valueOf(this.getBoolean(columnIndex));
+		}
+		else if (type == BigDecimal.class) {
+			converted = this.getBigDecimal(columnIndex);
+		}
+		else if (type == Timestamp.class) {
+			converted = this.getTimestamp(columnIndex);
+		}
+		else if (type == Date.class) {
+			converted = this.getDate(columnIndex);
+		}
+		else if (type == Time.class) {
+			converted = this.getTime(columnIndex);
+		}
+		else if (type == LocalDateTime.class) {
+			converted = this.getTimestamp(columnIndex).toLocalDateTime();
+		}
+		else if (type == LocalDate.class) {
+			converted = this.getDate(columnIndex).toLocalDate();
+		}
+		else if (type == LocalTime.class) {
+			converted = this.getTime(columnIndex).toLocalTime();
+		}
+		else {
+			throw CachedResultSet.notSupported(value, type.getName());
+		}
+		return type.cast(converted);
+	}
+
+	@Override
+	public <T> T getObject(final String columnLabel, final Class<T> type) throws SQLException {
+		return this.getObject(this.findColumn(columnLabel), type);
+	}
+
+	@Override
+	public String getString(final int columnIndex) throws SQLException {
+		final Object value = this.value(columnIndex);
+		if (value == null) {
+			return null;
+		}
+		final String string = this.strings[columnIndex - 1];
+		return string != null ? string : value.toString();
+	}
+
+	@Override
+	public String getString(final String columnLabel) throws SQLException {
+		return this.getString(this.findColumn(columnLabel));
+	}
+
+	@Override
+	public String getNString(final int columnIndex) throws SQLException {
+		return this.getString(columnIndex);
+	}
+
+	@Override
+	public String getNString(final String columnLabel) throws SQLException {
+		return this.getString(this.findColumn(columnLabel));
+	}
+
+	@Override
+	public boolean getBoolean(final int columnIndex) throws SQLException {
+		final Object value = this.value(columnIndex);
+		if (value == null) {
+			return false;
+		}
+		if (value instanceof Boolean) {
+			return ((Boolean) value).booleanValue();
+		}
+		if (value instanceof BigDecimal) {
+			return ((BigDecimal) value).signum() != 0;
+		}
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue() != 0.0;
+		}
+		if (value instanceof String) {
+			final String string = ((String) value).trim().toLowerCase(Locale.ROOT);
+			return "true".equals(string) || "t".equals(string) || "1".equals(string)
+				|| "y".equals(string) || "yes".equals(string);
+		}
+		throw CachedResultSet.notSupported(value, "boolean");
+	}
+
+	@Override
+	public boolean getBoolean(final String columnLabel) throws SQLException {
+		return this.getBoolean(this.findColumn(columnLabel));
+	}
+
+	/**
+	 * @return null for a null value
+	 */
+	private Number getNumber(final int columnIndex, final String type) throws SQLException {
+		final Object value = this.value(columnIndex);
+		if (value == null || value instanceof Number) {
+			return (Number) value;
+		}
+		if (value instanceof Boolean) {
+			return Integer.valueOf(((Boolean) value).booleanValue() ? 1 : 0);
+		}
+		if (value instanceof String) {
+			try {
+				return new BigDecimal(((String) value).trim());
+			}
+			catch (final NumberFormatException e) {
+				throw new SQLException("Cannot convert '" + value + "' to " + type, e);
+			}
+		}
+		throw CachedResultSet.notSupported(value, type);
+	}
+
+	@Override
+	public byte getByte(final int columnIndex) throws SQLException {
+		final Number number = this.getNumber(columnIndex, "byte");
+		return number == null ? 0 : number.byteValue();
+	}
+
+	@Override
+	public byte getByte(final String columnLabel) throws SQLException {
+		return this.getByte(this.findColumn(columnLabel));
+	}
+
+	@Override
+	public short getShort(final int columnIndex) throws SQLException {
+		final Number number = this.getNumber(columnIndex, "short");
+		return number == null ? 0 : number.shortValue();
+	}
+
+	@Override
+	public short getShort(final String columnLabel) throws SQLException {
+		return this.getShort(this.findColumn(columnLabel));
+	}
+
+	@Override
+	public int getInt(final int columnIndex) throws SQLException {
+		final Number number = this.getNumber(columnIndex, "int");
+		return number == null ? 0 : number.intValue();
+	}
+
+	@Override
+	public int getInt(final String columnLabel) throws SQLException {
+		return this.getInt(this.findColumn(columnLabel));
+	}
+
+	@Override
+	public long getLong(final int columnIndex) throws SQLException {
+		final Number number = this.getNumber(columnIndex, "long");
+		return number == null ? 0L : number.longValue();
+	}
+
+	@Override
+	public long getLong(final String columnLabel) throws SQLException {
+		return this.getLong(this.findColumn(columnLabel));
+	}
+
+	@Override
+	public float getFloat(final int columnIndex) throws SQLException {
+		final Number number = this.getNumber(columnIndex, "float");
+		return number == null ? 0.0f : number.floatValue();
+	}
+
+	@Override
+	public float getFloat(final String columnLabel) throws SQLException {
+		return this.getFloat(this.findColumn(columnLabel));
+	}
+
+	@Override
+	public double getDouble(final int columnIndex) throws SQLException {
+		final Number number = this.getNumber(columnIndex, "double");
+		return number == null ? 0.0 : number.doubleValue();
+	}
+
+	@Override
+	public double getDouble(final String columnLabel) throws SQLException {
+		return this.getDouble(this.findColumn(columnLabel));
+	}
+
+	@Override
+	public BigDecimal getBigDecimal(final int columnIndex) throws SQLException {
+		final Number number = this.getNumber(columnIndex, "BigDecimal");
+		if (number == null || number instanceof BigDecimal) {
+			return (BigDecimal) number;
+		}
+		if (number instanceof BigInteger) {
+			return new BigDecimal((BigInteger) number);
+		}
+		if (number instanceof Double || number instanceof Float) {
+			return BigDecimal.valueOf(number.doubleValue());
+		}
+		return BigDecimal.valueOf(number.longValue());
+	}
+
+	@Override
+	public BigDecimal getBigDecimal(final String columnLabel) throws SQLException {
+		return this.getBigDecimal(this.findColumn(columnLabel));
+	}
+
+	@Override
+	@Deprecated
+	public BigDecimal getBigDecimal(final int columnIndex, final int scale) throws SQLException {
+		final BigDecimal decimal = this.getBigDecimal(columnIndex);
+		return decimal == null ? null : decimal.setScale(scale, RoundingMode.HALF_UP);
+	}
+
+	@Override
+	@Deprecated
+	public BigDecimal getBigDecimal(final String columnLabel, final int scale)
+			throws SQLException {
+		return this.getBigDecimal(this.findColumn(columnLabel), scale);
+	}
+
+	@Override
+	public byte[] getBytes(final int columnIndex) throws SQLException {
+		final Object value = this.value(columnIndex);
+		if (value == null) {
+			return null;
+		}
+		if (value instanceof byte[]) {
+			return ((byte[]) value).clone();
+		}
+		throw CachedResultSet.notSupported(value, "byte[]");
+	}
+
+	@Override
+	public byte[] getBytes(final String columnLabel) throws SQLException {
+		return this.getBytes(this.findColumn(columnLabel));
+	}
+
+	@Override
+	public Timestamp getTimestamp(final int columnIndex) throws SQLException {
+		final Object value = this.value(columnIndex);
+		if (value == null || value instanceof Timestamp) {
+			return (Timestamp) value;
+		}
+		if (value instanceof java.util.Date) {
+			return new Timestamp(((java.util.Date) value).getTime());
+		}
+		if (value instanceof LocalDateTime) {
+			return Timestamp.valueOf((LocalDateTime) value);
+		}
+		if (value instanceof String) {
+			try {
+				return Timestamp.valueOf(((String) value).trim());
+			}
+			catch (final IllegalArgumentException e) {
+				throw new SQLException("Cannot convert '" + value + "' to Timestamp", e);
+			}
+		}
+		throw CachedResultSet.notSupported(value, "Timestamp");
+	}
+
+	@Override
+	public Timestamp getTimestamp(final String columnLabel) throws SQLException {
+		return this.getTimestamp(this.findColumn(columnLabel));
+	}
+
+	/**
+	 * Reads the value as a wall clock time in the calendar's time zone, as
+	 * drivers do for columns without a time zone.
+	 */
+	@Override
+	public Timestamp getTimestamp(final int columnIndex, final Calendar cal)
+			throws SQLException {
+		final Timestamp timestamp = this.getTimestamp(columnIndex);
+		if (timestamp == null || cal == null) {
+			return timestamp;
+		}
+		final Timestamp converted = Timestamp.from(timestamp.toLocalDateTime()
+			.atZone(cal.getTimeZone().toZoneId()).toInstant());
+		converted.setNanos(timestamp.getNanos());
+		return converted;
+	}
+
+	@Override
+	public Timestamp getTimestamp(final String columnLabel, final Calendar cal)
+			throws SQLException {
+		return this.getTimestamp(this.findColumn(columnLabel), cal);
+	}
+
+	@Override
+	public Date getDate(final int columnIndex) throws SQLException {
+		final Object value = this.value(columnIndex);
+		if (value == null || value instanceof Date) {
+			return (Date) value;
+		}
+		if (value instanceof Timestamp) {
+			return Date.valueOf(((Timestamp) value).toLocalDateTime().toLocalDate());
+		}
+		if (value instanceof java.util.Date) {
+			return new Date(((java.util.Date) value).getTime());
+		}
+		if (value instanceof LocalDate) {
+			return Date.valueOf((LocalDate) value);
+		}
+		if (value instanceof String) {
+			try {
+				return Date.valueOf(((String) value).trim());
+			}
+			catch (final IllegalArgumentException e) {
+				throw new SQLException("Cannot convert '" + value + "' to Date", e);
+			}
+		}
+		throw CachedResultSet.notSupported(value, "Date");
+	}
+
+	@Override
+	public Date getDate(final String columnLabel) throws SQLException {
+		return this.getDate(this.findColumn(columnLabel));
+	}
+
+	@Override
+	public Date getDate(final int columnIndex, final Calendar cal) throws SQLException {
+		final Date date = this.getDate(columnIndex);
+		if (date == null || cal == null) {
+			return date;
+		}
+		return new Date(date.toLocalDate().atStartOfDay(cal.getTimeZone().toZoneId())
+			.toInstant().toEpochMilli());
+	}
+
+	@Override
+	public Date getDate(final String columnLabel, final Calendar cal) throws SQLException {
+		return this.getDate(this.findColumn(columnLabel), cal);
+	}
+
+	@Override
+	public Time getTime(final int columnIndex) throws SQLException {
+		final Object value = this.value(columnIndex);
+		if (value == null || value instanceof Time) {
+			return (Time) value;
+		}
+		if (value instanceof Timestamp) {
+			return Time.valueOf(((Timestamp) value).toLocalDateTime().toLocalTime());
+		}
+		if (value instanceof LocalTime) {
+			return Time.valueOf((LocalTime) value);
+		}
+		if (value instanceof String) {
+			try {
+				return Time.valueOf(((String) value).trim());
+			}
+			catch (final IllegalArgumentException e) {
+				throw new SQLException("Cannot convert '" + value + "' to Time", e);
+			}
+		}
+		throw CachedResultSet.notSupported(value, "Time");
+	}
+
+	@Override
+	public Time getTime(final String columnLabel) throws SQLException {
+		return this.getTime(this.findColumn(columnLabel));
+	}
+
+	@Override
+	public Time getTime(final int columnIndex, final Calendar cal) throws SQLException {
+		final Time time = this.getTime(columnIndex);
+		if (time == null || cal == null) {
+			return time;
+		}
+		return new Time(time.toLocalTime().atDate(LocalDate.of(1970, 1, 1))
+			.atZone(cal.getTimeZone().toZoneId()).toInstant().toEpochMilli());
+	}
+
+	@Override
+	public Time getTime(final String columnLabel, final Calendar cal) throws SQLException {
+		return this.getTime(this.findColumn(columnLabel), cal);
+	}
+
+	@Override
+	public InputStream getAsciiStream(final int columnIndex) throws SQLException {
+		final String string = this.getString(columnIndex);
+		return string == null ? null
+			: new ByteArrayInputStream(string.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	@Override
+	public InputStream getAsciiStream(final String columnLabel) throws SQLException {
+		return this.getAsciiStream(this.findColumn(columnLabel));
+	}
+
+	@Override
+	@Deprecated
+	public InputStream getUnicodeStream(final int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("getUnicodeStream is not supported");
+	}
+
+	@Override
+	@Deprecated
+	public InputStream getUnicodeStream(final String columnLabel) throws SQLException {
+		throw new SQLFeatureNotSupportedException("getUnicodeStream is not supported");
+	}
+
+	@Override
+	public InputStream getBinaryStream(final int columnIndex) throws SQLException {
+		final byte[] bytes = this.getBytes(columnIndex);
+		return bytes == null ? null : new ByteArrayInputStream(bytes);
+	}
+
+	@Override
+	public InputStream getBinaryStream(final String columnLabel) throws SQLException {
+		return this.getBinaryStream(this.findColumn(columnLabel));
+	}
+
+	@Override
+	public Reader getCharacterStream(final int columnIndex) throws SQLException {
+		final String string = this.getString(columnIndex);
+		return string == null ? null : new StringReader(string);
+	}
+
+	@Override
+	public Reader getCharacterStream(final String columnLabel) throws SQLException {
+		return this.getCharacterStream(this.findColumn(columnLabel));
+	}
+
+	@Override
+	public Reader getNCharacterStream(final int columnIndex) throws SQLException {
+		return this.getCharacterStream(columnIndex);
+	}
+
+	@Override
+	public Reader getNCharacterStream(final String columnLabel) throws SQLException {
+		return this.getCharacterStream(this.findColumn(columnLabel));
+	}
+
+	@Override
+	public Ref getRef(final int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("Refs are not cached");
+	}
+
+	@Override
+	public Ref getRef(final String columnLabel) throws SQLException {
+		throw new SQLFeatureNotSupportedException("Refs are not cached");
+	}
+
+	@Override
+	public Blob getBlob(final int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("LOBs are not cached");
+	}
+
+	@Override
+	public Blob getBlob(final String columnLabel) throws SQLException {
+		throw new SQLFeatureNotSupportedException("LOBs are not cached");
+	}
+
+	@Override
+	public Clob getClob(final int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("LOBs are not cached");
+	}
+
+	@Override
+	public Clob getClob(final String columnLabel) throws SQLException {
+		throw new SQLFeatureNotSupportedException("LOBs are not cached");
+	}
+
+	@Override
+	public NClob getNClob(final int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("LOBs are not cached");
+	}
+
+	@Override
+	public NClob getNClob(final String columnLabel) throws SQLException {
+		throw new SQLFeatureNotSupportedException("LOBs are not cached");
+	}
+
+	@Override
+	public Array getArray(final int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("Arrays are not cached");
+	}
+
+	@Override
+	public Array getArray(final String columnLabel) throws SQLException {
+		throw new SQLFeatureNotSupportedException("Arrays are not cached");
+	}
+
+	@Override
+	public RowId getRowId(final int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("Row ids are not cached");
+	}
+
+	@Override
+	public RowId getRowId(final String columnLabel) throws SQLException {
+		throw new SQLFeatureNotSupportedException("Row ids are not cached");
+	}
+
+	@Override
+	public SQLXML getSQLXML(final int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("SQLXML is not cached");
+	}
+
+	@Override
+	public SQLXML getSQLXML(final String columnLabel) throws SQLException {
+		throw new SQLFeatureNotSupportedException("SQLXML is not cached");
+	}
+
+	@Override
+	public URL getURL(final int columnIndex) throws SQLException {
+		throw new SQLFeatureNotSupportedException("URLs are not supported");
+	}
+
+	@Override
+	public URL getURL(final String columnLabel) throws SQLException {
+		throw new SQLFeatureNotSupportedException("URLs are not supported");
+	}
+
+	@Override
+	public SQLWarning getWarnings() {
+		return null;
+	}
+
+	@Override
+	public void clearWarnings() {
+		// There are none.
+	}
+
+	@Override
+	public String getCursorName() throws SQLException {
+		throw new SQLFeatureNotSupportedException("Cached result sets have no cursor");
+	}
+
+	@Override
+	public Statement getStatement() {
+		return null;
+	}
+
+	@Override
+	public int getRow() {
+		return this.rowNumber <= this.rowCount ? this.rowNumber : 0;
+	}
+
+	@Override
+	public boolean isBeforeFirst() {
+		return this.rowNumber == 0 && this.rowCount > 0;
+	}
+
+	@Override
+	public boolean isAfterLast() {
+		return this.rowNumber > this.rowCount && this.rowCount > 0;
+	}
+
+	@Override
+	public boolean isFirst() {
+		return this.rowNumber == 1 && this.rowCount > 0;
+	}
+
+	@Override
+	public boolean isLast() {
+		return this.rowNumber == this.rowCount && this.rowCount > 0;
+	}
+
+	@Override
+	public void beforeFirst() throws SQLException {
+		throw CachedResultSet.forwardOnly();
+	}
+
+	@Override
+	public void afterLast() throws SQLException {
+		throw CachedResultSet.forwardOnly();
+	}
+
+	@Override
+	public boolean first() throws SQLException {
+		throw CachedResultSet.forwardOnly();
+	}
+
+	@Override
+	public boolean last() throws SQLException {
+		throw CachedResultSet.forwardOnly();
+	}
+
+	@Override
+	public boolean absolute(final int row) throws SQLException {
+		throw CachedResultSet.forwardOnly();
+	}
+
+	@Override
+	public boolean relative(final int rows) throws SQLException {
+		throw CachedResultSet.forwardOnly();
+	}
+
+	@Override
+	public boolean previous() throws SQLException {
+		throw CachedResultSet.forwardOnly();
+	}
+
+	@Override
+	public void setFetchDirection(final int direction) throws SQLException {
+		if (direction != ResultSet.FETCH_FORWARD) {
+			throw CachedResultSet.forwardOnly();
+		}
+	}
+
+	@Override
+	public int getFetchDirection() {
+		return ResultSet.FETCH_FORWARD;
+	}
+
+	@Override
+	public void setFetchSize(final int rows) {
+		// All rows are in memory already.
+	}
+
+	@Override
+	public int getFetchSize() {
+		return 0;
+	}
+
+	@Override
+	public int getType() {
+		return ResultSet.TYPE_FORWARD_ONLY;
+	}
+
+	@Override
+	public int getConcurrency() {
+		return ResultSet.CONCUR_READ_ONLY;
+	}
+
+	@Override
+	public int getHoldability() {
+		return ResultSet.HOLD_CURSORS_OVER_COMMIT;
+	}
+
+	@Override
+	public boolean rowUpdated() {
+		return false;
+	}
+
+	@Override
+	public boolean rowInserted() {
+		return false;
+	}
+
+	@Override
+	public boolean rowDeleted() {
+		return false;
+	}
+
+	@Override
+	public void insertRow() throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void deleteRow() throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void refreshRow() throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void cancelRowUpdates() throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void moveToInsertRow() throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void moveToCurrentRow() throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateNull(final int columnIndex) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBoolean(final int columnIndex, final boolean x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateByte(final int columnIndex, final byte x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateShort(final int columnIndex, final short x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateInt(final int columnIndex, final int x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateLong(final int columnIndex, final long x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateFloat(final int columnIndex, final float x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateDouble(final int columnIndex, final double x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBigDecimal(final int columnIndex, final BigDecimal x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateString(final int columnIndex, final String x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBytes(final int columnIndex, final byte[] x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateDate(final int columnIndex, final Date x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateTime(final int columnIndex, final Time x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateTimestamp(final int columnIndex, final Timestamp x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateAsciiStream(final int columnIndex, final InputStream x, final int length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBinaryStream(final int columnIndex, final InputStream x, final int length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateCharacterStream(final int columnIndex, final Reader x, final int length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateObject(final int columnIndex, final Object x, final int scaleOrLength)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateObject(final int columnIndex, final Object x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateNull(final String columnLabel) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBoolean(final String columnLabel, final boolean x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateByte(final String columnLabel, final byte x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateShort(final String columnLabel, final short x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateInt(final String columnLabel, final int x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateLong(final String columnLabel, final long x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateFloat(final String columnLabel, final float x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateDouble(final String columnLabel, final double x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBigDecimal(final String columnLabel, final BigDecimal x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateString(final String columnLabel, final String x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBytes(final String columnLabel, final byte[] x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateDate(final String columnLabel, final Date x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateTime(final String columnLabel, final Time x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateTimestamp(final String columnLabel, final Timestamp x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateAsciiStream(final String columnLabel, final InputStream x, final int length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBinaryStream(final String columnLabel, final InputStream x, final int length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateCharacterStream(final String columnLabel, final Reader x, final int length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateObject(final String columnLabel, final Object x, final int scaleOrLength)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateObject(final String columnLabel, final Object x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateRow() throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateRef(final int columnIndex, final Ref x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateRef(final String columnLabel, final Ref x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBlob(final int columnIndex, final Blob x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBlob(final String columnLabel, final Blob x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateClob(final int columnIndex, final Clob x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateClob(final String columnLabel, final Clob x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateArray(final int columnIndex, final Array x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateArray(final String columnLabel, final Array x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateRowId(final int columnIndex, final RowId x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateRowId(final String columnLabel, final RowId x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateNString(final int columnIndex, final String x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateNString(final String columnLabel, final String x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateNClob(final int columnIndex, final NClob x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateNClob(final String columnLabel, final NClob x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateSQLXML(final int columnIndex, final SQLXML x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateSQLXML(final String columnLabel, final SQLXML x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateNCharacterStream(final int columnIndex, final Reader x, final long length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateNCharacterStream(final String columnLabel, final Reader x, final long length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateAsciiStream(final int columnIndex, final InputStream x, final long length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBinaryStream(final int columnIndex, final InputStream x, final long length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateCharacterStream(final int columnIndex, final Reader x, final long length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateAsciiStream(final String columnLabel, final InputStream x, final long length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBinaryStream(final String columnLabel, final InputStream x, final long length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateCharacterStream(final String columnLabel, final Reader x, final long length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBlob(final int columnIndex, final InputStream x, final long length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBlob(final String columnLabel, final InputStream x, final long length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateClob(final int columnIndex, final Reader x, final long length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateClob(final String columnLabel, final Reader x, final long length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateNClob(final int columnIndex, final Reader x, final long length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateNClob(final String columnLabel, final Reader x, final long length)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateNCharacterStream(final int columnIndex, final Reader x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateNCharacterStream(final String columnLabel, final Reader x)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateAsciiStream(final int columnIndex, final InputStream x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBinaryStream(final int columnIndex, final InputStream x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateCharacterStream(final int columnIndex, final Reader x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateAsciiStream(final String columnLabel, final InputStream x)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBinaryStream(final String columnLabel, final InputStream x)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateCharacterStream(final String columnLabel, final Reader x)
+			throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBlob(final int columnIndex, final InputStream x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateBlob(final String columnLabel, final InputStream x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateClob(final int columnIndex, final Reader x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateClob(final String columnLabel, final Reader x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateNClob(final int columnIndex, final Reader x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public void updateNClob(final String columnLabel, final Reader x) throws SQLException {
+		throw CachedResultSet.readOnly();
+	}
+
+	@Override
+	public <T> T unwrap(final Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return iface.cast(this);
+		}
+		throw new SQLException("Not a wrapper for " + iface.getName());
+	}
+
+	@Override
+	public boolean isWrapperFor(final Class<?> iface) {
+		return iface.isInstance(this);
+	}
+
+	/**
+	 * Copy of the driver's metadata for a cached result, shared by every replay
+	 * of it.
+	 */
+	static final class MetaData implements ResultSetMetaData {
+		private final Column[] columns;
+		private final Map<String, Integer> indexes;
+
+		MetaData(final ResultSetMetaData metaData) throws SQLException {
+			this.columns = new Column[metaData.getColumnCount()];
+			this.indexes = new HashMap<String, Integer>();
+			for (int i = 0; i < this.columns.length; i++) {
+				this.columns[i] = new Column(metaData, i + 1);
+				final String label = this.columns[i].label.toLowerCase(Locale.ROOT);
+				if (!this.indexes.containsKey(label)) {
+					this.indexes.put(label, Integer.valueOf(i + 1));
+				}
+			}
+		}
+
+		int findColumn(final String columnLabel) throws SQLException {
+			final Integer index = this.indexes.get(columnLabel.toLowerCase(Locale.ROOT));
+			if (index == null) {
+				throw new SQLException("No column " + columnLabel);
+			}
+			return index.intValue();
+		}
+
+		/**
+		 * @return a rough count of the bytes held, for the cache's budget
+		 */
+		long getSize() {
+			return 64L * this.columns.length;
+		}
+
+		private Column column(final int column) throws SQLException {
+			if (column < 1 || column > this.columns.length) {
+				throw new SQLException("Invalid column index " + column);
+			}
+			return this.columns[column - 1];
+		}
+
+		@Override
+		public int getColumnCount() {
+			return this.columns.length;
+		}
+
+		@Override
+		public boolean isAutoIncrement(final int column) throws SQLException {
+			return this.column(column).autoIncrement;
+		}
+
+		@Override
+		public boolean isCaseSensitive(final int column) throws SQLException {
+			return this.column(column).caseSensitive;
+		}
+
+		@Override
+		public boolean isSearchable(final int column) throws SQLException {
+			return this.column(column).searchable;
+		}
+
+		@Override
+		public boolean isCurrency(final int column) throws SQLException {
+			return this.column(column).currency;
+		}
+
+		@Override
+		public int isNullable(final int column) throws SQLException {
+			return this.column(column).nullable;
+		}
+
+		@Override
+		public boolean isSigned(final int column) throws SQLException {
+			return this.column(column).signed;
+		}
+
+		@Override
+		public int getColumnDisplaySize(final int column) throws SQLException {
+			return this.column(column).displaySize;
+		}
+
+		@Override
+		public String getColumnLabel(final int column) throws SQLException {
+			return this.column(column).label;
+		}
+
+		@Override
+		public String getColumnName(final int column) throws SQLException {
+			return this.column(column).name;
+		}
+
+		@Override
+		public String getSchemaName(final int column) throws SQLException {
+			return this.column(column).schemaName;
+		}
+
+		@Override
+		public int getPrecision(final int column) throws SQLException {
+			return this.column(column).precision;
+		}
+
+		@Override
+		public int getScale(final int column) throws SQLException {
+			return this.column(column).scale;
+		}
+
+		@Override
+		public String getTableName(final int column) throws SQLException {
+			return this.column(column).tableName;
+		}
+
+		@Override
+		public String getCatalogName(final int column) throws SQLException {
+			return this.column(column).catalogName;
+		}
+
+		@Override
+		public int getColumnType(final int column) throws SQLException {
+			return this.column(column).type;
+		}
+
+		@Override
+		public String getColumnTypeName(final int column) throws SQLException {
+			return this.column(column).typeName;
+		}
+
+		@Override
+		public boolean isReadOnly(final int column) throws SQLException {
+			this.column(column);
+			return true;
+		}
+
+		@Override
+		public boolean isWritable(final int column) throws SQLException {
+			this.column(column);
+			return false;
+		}
+
+		@Override
+		public boolean isDefinitelyWritable(final int column) throws SQLException {
+			this.column(column);
+			return false;
+		}
+
+		@Override
+		public String getColumnClassName(final int column) throws SQLException {
+			return this.column(column).className;
+		}
+
+		@Override
+		public <T> T unwrap(final Class<T> iface) throws SQLException {
+			if (iface.isInstance(this)) {
+				return iface.cast(this);
+			}
+			throw new SQLException("Not a wrapper for " + iface.getName());
+		}
+
+		@Override
+		public boolean isWrapperFor(final Class<?> iface) {
+			return iface.isInstance(this);
+		}
+	}
+
+	private static final class Column {
+		final String label;
+		final String name;
+		final String schemaName;
+		final String tableName;
+		final String catalogName;
+		final int type;
+		final String typeName;
+		final String className;
+		final int precision;
+		final int scale;
+		final int displaySize;
+		final int nullable;
+		final boolean autoIncrement;
+		final boolean caseSensitive;
+		final boolean searchable;
+		final boolean currency;
+		final boolean signed;
+
+		Column(final ResultSetMetaData metaData, final int column) throws SQLException {
+			this.label = metaData.getColumnLabel(column);
+			this.name = metaData.getColumnName(column);
+			this.schemaName = metaData.getSchemaName(column);
+			this.tableName = metaData.getTableName(column);
+			this.catalogName = metaData.getCatalogName(column);
+			this.type = metaData.getColumnType(column);
+			this.typeName = metaData.getColumnTypeName(column);
+			this.className = metaData.getColumnClassName(column);
+			this.precision = metaData.getPrecision(column);
+			this.scale = metaData.getScale(column);
+			this.displaySize = metaData.getColumnDisplaySize(column);
+			this.nullable = metaData.isNullable(column);
+			this.autoIncrement = metaData.isAutoIncrement(column);
+			this.caseSensitive = metaData.isCaseSensitive(column);
+			this.searchable = metaData.isSearchable(column);
+			this.currency = metaData.isCurrency(column);
+			this.signed = metaData.isSigned(column);
+		}
+	}
+}
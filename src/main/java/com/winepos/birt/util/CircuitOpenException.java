@@ -0,0 +1,15 @@
+package com.winepos.birt.util;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Thrown instead of trying to connect while a {@link DbConnectionPool} believes
+ * its database is down.
+ */
+public class CircuitOpenException extends SQLTransientConnectionException {
+	private static final long serialVersionUID = 1L;
+
+	public CircuitOpenException(final String reason) {
+		super(reason);
+	}
+}
@@ -0,0 +1,36 @@
+package com.winepos.birt.util;
+
+/**
+ * Name and JDBC type of one result set column.
+ */
+public final class ColumnInfo {
+	private final String name;
+	private final int jdbcType;
+	private final String typeName;
+
+	public ColumnInfo(final String name, final int jdbcType, final String typeName) {
+		this.name = name;
+		this.jdbcType = jdbcType;
+		this.typeName = typeName;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return one of the {@link java.sql.Types} constants
+	 */
+	public int getJdbcType() {
+		return jdbcType;
+	}
+
+	public String getTypeName() {
+		return typeName;
+	}
+
+	@Override
+	public String toString() {
+		return name + " " + typeName;
+	}
+}
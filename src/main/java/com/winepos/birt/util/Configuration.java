@@ -4,26 +4,84 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.management.JMException;
 import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
 
 public class Configuration {
 	private String jndiName;
 	private DbConnectionPool pool;
+	private final String jmxName;
 	private final String resourcesDirName;
 	private final String logFilename;
 	private final boolean logDebug;
+	private final Properties properties;
+	private final AsyncLogWriter logWriter;
+	private final AtomicReference<DataSource> dataSource;
+	private final int jndiRetries;
+	private final long jndiRetryDelay;
+	private final boolean jndiFallback;
+	private final int batchSize;
+	private final int batchCommitInterval;
+	private final int fetchSize;
+	private final long reloadDelay;
+	private final long reloadDrainTimeout;
+	private final SqlResourceCache sqlResourceCache;
+	private final TableMetadataCache tableMetadataCache;
+	private final ResultCache resultCache;
+	private final StatementStats statementStats;
+	private final ReplicaRouter replicaRouter;
+	private volatile DbExecutor asyncExecutor;
 
 	// null,java.lang.String,java.lang.String,java.lang.String,java.lang.String,string,org.mozilla.javascript.ConsString,boolean
 	public Configuration(String jndiName, final String driver, final String url,
 			final String username, final String password, final String resourcesDirName,
 			final String logFilename, final boolean logDebug)
 			throws ClassNotFoundException, SQLException {
+		this(jndiName, driver, url, username, password, resourcesDirName, logFilename, logDebug,
+				new Properties());
+	}
+
+	public Configuration(String jndiName, final String driver, final String url,
+			final String username, final String password, final String resourcesDirName,
+			final String logFilename, final boolean logDebug, final Properties properties)
+			throws ClassNotFoundException, SQLException {
+		this(jndiName, driver, url, username, password, resourcesDirName, logFilename, logDebug,
+				properties, null);
+	}
+
+	/**
+	 * @param previous the configuration this one replaces, whose pools, executor
+	 *            and caches are taken over when their settings have not changed
+	 */
+	Configuration(String jndiName, final String driver, final String url, final String username,
+			final String password, final String resourcesDirName, final String logFilename,
+			final boolean logDebug, final Properties properties, final Configuration previous)
+			throws ClassNotFoundException, SQLException {
+		this.properties = properties;
 		this.logFilename = logFilename;
 		this.logDebug = logDebug;
+		if (getBooleanProperty("log.async", false)) {
+			this.logWriter = AsyncLogWriter.getInstance(logFilename,
+				getIntProperty("log.async.queueSize", 8192),
+				AsyncLogWriter.OverflowPolicy.valueOf(
+					getStringProperty("log.async.overflowPolicy", "BLOCK").toUpperCase()),
+				getIntProperty("log.async.batchSize", 256));
+		}
+		else {
+			this.logWriter = null;
+		}
 		final Logger logger = getLogger();
 		logger.log("********************************* Starting");
+		// Checked before any connection is opened.
+		if (resourcesDirName == null) {
+			throw new RuntimeException("resources property not found");
+		}
 		if (jndiName != null) {
 			try {
 				new InitialContext();
@@ -34,18 +92,283 @@ public class Configuration {
 			}
 		}
 		this.jndiName = jndiName;
-		if (jndiName == null) {
-			this.pool = new DbConnectionPool(driver, url, username, password);
+		final boolean sameDatabase = previous != null && previous.isSameDatabase(properties)
+			&& (jndiName == null ? previous.jndiName == null : jndiName.equals(previous.jndiName));
+		this.dataSource = sameDatabase ? previous.dataSource : new AtomicReference<DataSource>();
+		this.jndiRetries = Math.max(getIntProperty("db.jndi.retries", 1), 0);
+		this.jndiRetryDelay = getLongProperty("db.jndi.retryDelay", 100L);
+		this.jndiFallback = getBooleanProperty("db.jndi.fallback", true);
+		this.batchSize = Math.max(getIntProperty("db.batch.size", 500), 1);
+		this.batchCommitInterval = Math.max(getIntProperty("db.batch.commitInterval", 10000), 0);
+		this.fetchSize = Math.max(getIntProperty("db.fetchSize", 1000), 1);
+		// Read by the ConfigurationWatcher, which would fail too late to keep the
+		// current configuration.
+		this.reloadDelay = getLongProperty("config.reload.delay", 500L);
+		this.reloadDrainTimeout = getLongProperty("config.reload.drainTimeout", 60000L);
+		this.jmxName = getStringProperty("db.pool.jmxName", url);
+		if (sameDatabase) {
+			this.pool = previous.pool;
+			this.asyncExecutor = previous.asyncExecutor;
 		}
-		if (resourcesDirName == null) {
-			throw new RuntimeException("resources property not found");
+		else if (jndiName == null || this.jndiFallback && url != null) {
+			// With JNDI the pool is only there to fall back to.
+			this.pool = createPool(driver, url, username, password, this.jmxName);
+		}
+		try {
+			final String replicaUrls = getStringProperty("db.replica.urls", null);
+			if (sameDatabase) {
+				this.replicaRouter = previous.replicaRouter;
+			}
+			else if (replicaUrls != null) {
+				this.replicaRouter = new ReplicaRouter(this, driver,
+						Arrays.asList(replicaUrls.split("\\s*,\\s*")),
+						getStringProperty("db.replica.username", username),
+						getStringProperty("db.replica.password", password),
+						"leastLoad".equalsIgnoreCase(
+							getStringProperty("db.replica.policy", null))
+								? ReplicaRouter.Policy.LEAST_LOAD
+								: ReplicaRouter.Policy.ROUND_ROBIN,
+						getLongProperty("db.replica.retryInterval", 30000L));
+			}
+			else {
+				this.replicaRouter = null;
+			}
+			this.resourcesDirName = resourcesDirName;
+			final long checkInterval = getLongProperty("sql.cache.checkInterval", 1000L);
+			if (previous != null && resourcesDirName.equals(previous.resourcesDirName)
+				&& checkInterval == previous.getLongProperty("sql.cache.checkInterval", 1000L)) {
+				this.sqlResourceCache = previous.sqlResourceCache;
+			}
+			else {
+				this.sqlResourceCache = new SqlResourceCache(new File(resourcesDirName),
+						checkInterval);
+			}
+			final long metadataTtl = getLongProperty("metadata.cache.ttl", 300000L);
+			if (sameDatabase && metadataTtl == previous.getLongProperty("metadata.cache.ttl",
+				300000L)) {
+				this.tableMetadataCache = previous.tableMetadataCache;
+			}
+			else {
+				this.tableMetadataCache = new TableMetadataCache(metadataTtl);
+			}
+			if (sameDatabase && getProperties(properties, "result.cache.")
+				.equals(getProperties(previous.properties, "result.cache."))) {
+				this.resultCache = previous.resultCache;
+			}
+			else {
+				this.resultCache = createResultCache();
+			}
+			// Keeps the latency histograms; db.slowQueryThreshold is one of the db.
+			// settings, but the stats also log through the previous log settings.
+			if (sameDatabase && logWriter == previous.logWriter && logDebug == previous.logDebug
+				&& (logFilename == null ? previous.logFilename == null
+					: logFilename.equals(previous.logFilename))) {
+				this.statementStats = previous.statementStats;
+			}
+			else {
+				this.statementStats = new StatementStats(logger,
+						getLongProperty("db.slowQueryThreshold", 1000L));
+			}
+		}
+		catch (final RuntimeException e) {
+			// Do not leave the connections and housekeeper of a pool nobody will use.
+			if (this.pool != null && (previous == null || this.pool != previous.pool)) {
+				try {
+					this.pool.shutdown();
+				}
+				catch (final SQLException e2) {
+					e.addSuppressed(e2);
+				}
+			}
+			throw e;
 		}
-		this.resourcesDirName = resourcesDirName;
+		registerResultCacheMBean();
 		logger.log("Configuration loaded, jndiName = " + this.jndiName + ", pool = " + this.pool
-			+ ", resourcesDirName = " + this.resourcesDirName);
+			+ ", replicas = " + this.replicaRouter + ", resourcesDirName = "
+			+ this.resourcesDirName);
+	}
+
+	/**
+	 * Creates a pool with the db.pool.* settings, for the primary database or a
+	 * replica.
+	 */
+	DbConnectionPool createPool(final String driver, final String url, final String username,
+			final String password, final String jmxName)
+			throws ClassNotFoundException, SQLException {
+		final DbConnectionPool pool = new DbConnectionPool(driver,
+				withBatchedInsertRewrite(url, getBooleanProperty("db.reWriteBatchedInserts",
+					true)),
+				username, password,
+				getIntProperty("db.pool.maxSize", 0), getIntProperty("db.pool.minIdle", 0),
+				getLongProperty("db.pool.acquireTimeout", 30000L));
+		try {
+			if (pool.getMinIdle() > 0) {
+				getLogger().log(pool.getPooledConnectionCount() + " idle connections to " + url
+					+ " after a " + pool.getWarmUpTime() + "ms warm-up, "
+					+ pool.getWarmUpFailures() + " failed");
+			}
+			pool.setTimeout(getLongProperty("db.pool.idleTimeout", 900000L));
+			pool.setValidationInterval(getLongProperty("db.pool.validationInterval", 0L));
+			pool.setValidationTimeout(getIntProperty("db.pool.validationTimeout", 5));
+			pool.setLeakDetectionThreshold(getLongProperty("db.pool.leakDetectionThreshold", 0L));
+			pool.setLeakDetectionSampleRate(getDoubleProperty("db.pool.leakDetectionSampleRate",
+				pool.getLeakDetectionSampleRate()));
+			pool.setStatementCacheSize(getIntProperty("db.pool.statementCacheSize", 32));
+			pool.setMaxConcurrentCreations(getIntProperty("db.pool.maxConcurrentCreations",
+				pool.getMaxConcurrentCreations()));
+			pool.setConnectRetries(getIntProperty("db.pool.connectRetries", 5));
+			pool.setRetryBackoff(getLongProperty("db.pool.retryBackoff", 100L));
+			pool.setRetryBackoffMax(getLongProperty("db.pool.retryBackoffMax", 5000L));
+			pool.setCircuitBreakerThreshold(getIntProperty("db.pool.circuitBreakerThreshold", 5));
+			pool.setCircuitBreakerResetTimeout(
+				getLongProperty("db.pool.circuitBreakerResetTimeout", 10000L));
+			final long housekeepingInterval = getLongProperty("db.pool.housekeepingInterval",
+				30000L);
+			if (housekeepingInterval > 0L) {
+				pool.startHousekeeper(housekeepingInterval);
+			}
+		}
+		catch (final RuntimeException e) {
+			// An invalid db.pool.* setting.
+			try {
+				pool.shutdown();
+			}
+			catch (final SQLException e2) {
+				e.addSuppressed(e2);
+			}
+			throw e;
+		}
+		registerMBean(pool, jmxName);
+		return pool;
+	}
+
+	/**
+	 * Creates the result cache with result.cache.ttl as the default TTL and
+	 * result.cache.ttl.&lt;name&gt; as the TTL of a SQL resource or statement.
+	 */
+	private ResultCache createResultCache() {
+		final ResultCache resultCache = new ResultCache(
+				getLongProperty("result.cache.maxBytes", 64L * 1024L * 1024L),
+				getLongProperty("result.cache.ttl", 0L));
+		final String prefix = "result.cache.ttl.";
+		for (final String name : properties.stringPropertyNames()) {
+			if (name.startsWith(prefix) && name.length() > prefix.length()) {
+				resultCache.setTtl(name.substring(prefix.length()), getLongProperty(name, 0L));
+			}
+		}
+		return resultCache;
+	}
+
+	private void registerResultCacheMBean() {
+		if (getBooleanProperty("db.pool.jmx", true)) {
+			try {
+				resultCache.registerMBean(jmxName != null ? jmxName : String.valueOf(jndiName));
+			}
+			catch (final JMException e) {
+				getLogger().log("Unable to register result cache MBean", e);
+			}
+		}
+	}
+
+	void registerMBean(final DbConnectionPool pool, final String name) {
+		if (getBooleanProperty("db.pool.jmx", true)) {
+			try {
+				pool.registerMBean(name);
+			}
+			catch (final JMException e) {
+				getLogger().log("Unable to register connection pool MBean", e);
+			}
+		}
+	}
+
+	/**
+	 * Registers the MBeans of the primary and replica pools, for instance after
+	 * taking over the pools of a previous configuration.
+	 */
+	void registerMBeans() {
+		if (pool != null) {
+			registerMBean(pool, jmxName);
+		}
+		if (replicaRouter != null) {
+			replicaRouter.registerMBeans();
+		}
+		registerResultCacheMBean();
+	}
+
+	void unregisterMBeans() {
+		if (pool != null) {
+			pool.unregisterMBean();
+		}
+		if (replicaRouter != null) {
+			replicaRouter.unregisterMBeans();
+		}
+		resultCache.unregisterMBean();
+	}
+
+	/**
+	 * @return whether every db.* property, and so every pool, replica and executor
+	 *         setting, is the same in {@code properties}
+	 */
+	boolean isSameDatabase(final Properties properties) {
+		return getProperties(this.properties, "db.").equals(getProperties(properties, "db."));
+	}
+
+	private static Properties getProperties(final Properties properties, final String prefix) {
+		final Properties selected = new Properties();
+		for (final String name : properties.stringPropertyNames()) {
+			if (name.startsWith(prefix)) {
+				selected.setProperty(name, properties.getProperty(name));
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Shuts down what {@code next} has not taken over: the pools once their
+	 * checked out connections are given back or {@code timeout} milliseconds have
+	 * passed, and the async executor once its queued tasks have run.
+	 */
+	void retire(final Configuration next, final long timeout) throws SQLException {
+		final Logger logger = getLogger();
+		final long deadline = System.currentTimeMillis() + timeout;
+		if (pool != null && pool != next.pool) {
+			if (!pool.drain(timeout)) {
+				logger.log(pool.getOpenConnectionCount() + " connections to " + pool.getURL()
+					+ " were still checked out after " + timeout
+					+ "ms; they will be closed when given back");
+			}
+		}
+		if (replicaRouter != null && replicaRouter != next.replicaRouter) {
+			replicaRouter.drain(Math.max(deadline - System.currentTimeMillis(), 0L));
+		}
+		final DbExecutor executor = asyncExecutor;
+		if (executor != null && executor != next.asyncExecutor) {
+			try {
+				executor.shutdown(Math.max(deadline - System.currentTimeMillis(), 0L));
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Turns on the PostgreSQL driver's rewriting of batched inserts into
+	 * multi-row inserts unless the URL already says otherwise.
+	 */
+	static String withBatchedInsertRewrite(final String url, final boolean reWrite) {
+		if (!reWrite || url == null || !url.startsWith("jdbc:postgresql:")
+			|| url.contains("reWriteBatchedInserts")) {
+			return url;
+		}
+		return url + (url.indexOf('?') < 0 ? "?" : "&") + "reWriteBatchedInserts=true";
 	}
 
 	public static Configuration load() throws IOException, ClassNotFoundException, SQLException {
+		return load(getPropertiesFileName());
+	}
+
+	static String getPropertiesFileName() {
 		final Properties systemProps = System.getProperties();
 		final String userHome = systemProps.getProperty("user.home");
 		String propertiesFileName = System.getenv("BIRT_REPORT_POJO_PROPERTIES");
@@ -60,12 +383,15 @@ public class Configuration {
 		if (propertiesFileName == null) {
 			throw new RuntimeException("BIRT_REPORT_POJO_PROPERTIES environment variable not set");
 		}
-		return load(propertiesFileName);
+		return propertiesFileName;
 	}
 
 	public static Configuration load(final String propertiesFileName)
 			throws IOException, ClassNotFoundException, SQLException {
-		final File propertiesFile = new File(propertiesFileName);
+		return load(loadProperties(new File(propertiesFileName)), null);
+	}
+
+	static Properties loadProperties(final File propertiesFile) throws IOException {
 		final Properties properties = new Properties();
 		final FileInputStream fis = new FileInputStream(propertiesFile);
 		try {
@@ -74,12 +400,17 @@ public class Configuration {
 		finally {
 			fis.close();
 		}
-		fis.close();
+		return properties;
+	}
+
+	static Configuration load(final Properties properties, final Configuration previous)
+			throws ClassNotFoundException, SQLException {
 		return new Configuration(properties.getProperty("db.jndi"),
 				properties.getProperty("db.driver"), properties.getProperty("db.url"),
 				properties.getProperty("db.username"), properties.getProperty("db.password"),
 				properties.getProperty("resources"), properties.getProperty("log.filename"),
-				"true".equalsIgnoreCase(properties.getProperty("log.debug")));
+				"true".equalsIgnoreCase(properties.getProperty("log.debug")), properties,
+				previous);
 	}
 
 	public String getJndiName() {
@@ -88,6 +419,70 @@ public class Configuration {
 
 	public void setJndiName(final String jndiName) {
 		this.jndiName = jndiName;
+		this.dataSource.set(null);
+	}
+
+	/**
+	 * Returns the data source bound to the JNDI name, looking it up only the first
+	 * time and again after {@link #invalidateDataSource(DataSource)}.
+	 */
+	public DataSource getDataSource() throws NamingException {
+		DataSource dataSource = this.dataSource.get();
+		if (dataSource == null) {
+			final InitialContext initialContext = new InitialContext();
+			try {
+				dataSource = (DataSource) initialContext.lookup(jndiName);
+			}
+			finally {
+				initialContext.close();
+			}
+			this.dataSource.compareAndSet(null, dataSource);
+		}
+		return dataSource;
+	}
+
+	/**
+	 * Drops the cached data source, unless another thread has already replaced it,
+	 * so that the next call to {@link #getDataSource()} looks it up again.
+	 */
+	public void invalidateDataSource(final DataSource failed) {
+		this.dataSource.compareAndSet(failed, null);
+	}
+
+	public int getJndiRetries() {
+		return jndiRetries;
+	}
+
+	public long getJndiRetryDelay() {
+		return jndiRetryDelay;
+	}
+
+	/**
+	 * @return whether connections come from the db.url pool when the JNDI data
+	 *         source cannot be reached; the pool is only built when db.url is set
+	 */
+	public boolean isJndiFallback() {
+		return jndiFallback;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public int getBatchCommitInterval() {
+		return batchCommitInterval;
+	}
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	public long getReloadDelay() {
+		return reloadDelay;
+	}
+
+	public long getReloadDrainTimeout() {
+		return reloadDrainTimeout;
 	}
 
 	public DbConnectionPool getPool() {
@@ -98,11 +493,123 @@ public class Configuration {
 		this.pool = pool;
 	}
 
+	/**
+	 * @return null if no replicas are configured
+	 */
+	public ReplicaRouter getReplicaRouter() {
+		return replicaRouter;
+	}
+
 	public String getResourcesDirName() {
 		return resourcesDirName;
 	}
 
+	Properties getProperties() {
+		return properties;
+	}
+
+	public String getProperty(final String name) {
+		return properties.getProperty(name);
+	}
+
+	public String getStringProperty(final String name, final String defaultValue) {
+		final String value = properties.getProperty(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		return value.trim();
+	}
+
+	public int getIntProperty(final String name, final int defaultValue) {
+		final String value = properties.getProperty(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		}
+		catch (final NumberFormatException e) {
+			throw new RuntimeException("Invalid value for property " + name + ": " + value);
+		}
+	}
+
+	public long getLongProperty(final String name, final long defaultValue) {
+		final String value = properties.getProperty(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		}
+		catch (final NumberFormatException e) {
+			throw new RuntimeException("Invalid value for property " + name + ": " + value);
+		}
+	}
+
+	public double getDoubleProperty(final String name, final double defaultValue) {
+		final String value = properties.getProperty(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Double.parseDouble(value.trim());
+		}
+		catch (final NumberFormatException e) {
+			throw new RuntimeException("Invalid value for property " + name + ": " + value);
+		}
+	}
+
+	public boolean getBooleanProperty(final String name, final boolean defaultValue) {
+		final String value = properties.getProperty(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		return "true".equalsIgnoreCase(value.trim());
+	}
+
+	public SqlResourceCache getSqlResourceCache() {
+		return sqlResourceCache;
+	}
+
+	public TableMetadataCache getTableMetadataCache() {
+		return tableMetadataCache;
+	}
+
+	public ResultCache getResultCache() {
+		return resultCache;
+	}
+
+	public StatementStats getStatementStats() {
+		return statementStats;
+	}
+
+	/**
+	 * Returns the executor behind DbInterface's asynchronous methods, creating it
+	 * on first use. Unless db.async.concurrency says otherwise it runs as many
+	 * tasks at once as the pool has connections.
+	 */
+	public DbExecutor getAsyncExecutor() {
+		DbExecutor executor = asyncExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				executor = asyncExecutor;
+				if (executor == null) {
+					int concurrency = getIntProperty("db.async.concurrency", 0);
+					if (concurrency <= 0) {
+						concurrency = pool != null && pool.getMaxSize() > 0 ? pool.getMaxSize()
+							: 16;
+					}
+					executor = new DbExecutor(concurrency,
+							getBooleanProperty("db.async.virtualThreads", true));
+					getLogger().log("Started " + executor);
+					asyncExecutor = executor;
+				}
+			}
+		}
+		return executor;
+	}
+
 	public Logger getLogger() {
-		return new Logger(logFilename, logDebug, null);
+		return new Logger(logFilename, logDebug, null, logWriter);
 	}
 }
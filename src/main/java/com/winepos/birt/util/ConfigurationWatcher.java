@@ -0,0 +1,191 @@
+package com.winepos.birt.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link Configuration} and replaces it when the properties
+ * file changes, so that a new database URL or password does not mean
+ * restarting the JVM. The new configuration, and its pool, is built while the
+ * old one keeps serving, then swapped in; the old pool is drained in the
+ * background. Pools, caches and the async executor whose settings did not
+ * change are carried over as they are.
+ * <p>
+ * A replaced pool refuses new checkouts, so code that should keep working
+ * across reloads must fetch the configuration from {@link #get()} for each
+ * piece of work, as {@link DbInterface#DbInterface(ConfigurationWatcher)}
+ * does, rather than hold on to a {@link Configuration}.
+ */
+public class ConfigurationWatcher {
+	private final File file;
+	private final AtomicReference<Configuration> configuration;
+	private volatile Thread thread;
+	private volatile WatchService watchService;
+
+	public ConfigurationWatcher() throws IOException, ClassNotFoundException, SQLException {
+		this(Configuration.getPropertiesFileName());
+	}
+
+	public ConfigurationWatcher(final String propertiesFileName)
+			throws IOException, ClassNotFoundException, SQLException {
+		this.file = new File(propertiesFileName).getAbsoluteFile();
+		this.configuration = new AtomicReference<Configuration>(
+				Configuration.load(file.getPath()));
+	}
+
+	/**
+	 * @return the configuration to use for the next piece of work; hold on to it
+	 *         only for as long as that work takes
+	 */
+	public Configuration get() {
+		return configuration.get();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Starts a daemon thread that reloads the configuration whenever the
+	 * properties file is written or replaced.
+	 */
+	public synchronized void start() throws IOException {
+		if (thread != null) {
+			return;
+		}
+		final Path dir = file.getParentFile().toPath();
+		final WatchService watchService = dir.getFileSystem().newWatchService();
+		dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+			StandardWatchEventKinds.ENTRY_MODIFY);
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch(watchService);
+			}
+		}, "ConfigurationWatcher " + file.getName());
+		thread.setDaemon(true);
+		this.watchService = watchService;
+		this.thread = thread;
+		thread.start();
+	}
+
+	public synchronized void stop() throws IOException {
+		if (thread == null) {
+			return;
+		}
+		thread.interrupt();
+		watchService.close();
+		thread = null;
+		watchService = null;
+	}
+
+	private void watch(final WatchService watchService) {
+		final Path name = file.toPath().getFileName();
+		try {
+			while (true) {
+				if (!isChanged(watchService.take(), name)) {
+					continue;
+				}
+				// Editors and deployment scripts write the file in several steps;
+				// wait for them to finish and let the events they cause go by.
+				Thread.sleep(get().getReloadDelay());
+				WatchKey key;
+				while ((key = watchService.poll()) != null) {
+					isChanged(key, name);
+				}
+				try {
+					reload();
+				}
+				catch (final RuntimeException e) {
+					// Keep watching; the next change may fix it.
+					get().getLogger().log("Unable to reload " + file, e);
+				}
+			}
+		}
+		catch (final InterruptedException e) {
+			// Stopped.
+		}
+		catch (final ClosedWatchServiceException e) {
+			// Stopped.
+		}
+	}
+
+	private static boolean isChanged(final WatchKey key, final Path name) {
+		boolean changed = false;
+		for (final WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW
+				|| name.equals(event.context())) {
+				changed = true;
+			}
+		}
+		key.reset();
+		return changed;
+	}
+
+	/**
+	 * Reads the properties file and, if it has changed, builds a new
+	 * configuration and swaps it in. When the new configuration cannot be built
+	 * the current one is kept.
+	 *
+	 * @return whether the configuration was replaced
+	 */
+	public synchronized boolean reload() {
+		final Configuration current = configuration.get();
+		final Logger logger = current.getLogger();
+		final Properties properties;
+		try {
+			properties = Configuration.loadProperties(file);
+		}
+		catch (final IOException e) {
+			logger.log("Unable to read " + file + ", keeping the current configuration", e);
+			return false;
+		}
+		if (properties.equals(current.getProperties())) {
+			return false;
+		}
+		final long start = System.currentTimeMillis();
+		// The new pools take over the MBean names.
+		current.unregisterMBeans();
+		final Configuration next;
+		try {
+			next = Configuration.load(properties, current);
+		}
+		catch (final Exception e) {
+			logger.log("Unable to reload " + file + ", keeping the current configuration", e);
+			current.registerMBeans();
+			return false;
+		}
+		next.registerMBeans();
+		configuration.set(next);
+		next.getLogger().log("Reloaded " + file + " in " + (System.currentTimeMillis() - start)
+			+ "ms" + (next.getPool() == current.getPool() ? ", connection pool kept" : ""));
+		retire(current, next);
+		return true;
+	}
+
+	private static void retire(final Configuration current, final Configuration next) {
+		final long timeout = next.getReloadDrainTimeout();
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					current.retire(next, timeout);
+				}
+				catch (final SQLException e) {
+					next.getLogger().log("Unable to shut down the previous configuration", e);
+				}
+			}
+		}, "ConfigurationWatcher retire");
+		thread.setDaemon(true);
+		thread.start();
+	}
+}
@@ -0,0 +1,149 @@
+package com.winepos.birt.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Dumps a table or query straight to CSV or TSV with PostgreSQL's
+ * {@code COPY ... TO STDOUT}. The server formats the rows and the bytes are
+ * copied to the output as they arrive, so nothing goes through BIRT and no row
+ * is ever turned into Java objects.
+ */
+public class CopyExporter {
+	public enum Format {
+		CSV("(FORMAT csv, HEADER)"),
+		TSV("(FORMAT csv, HEADER, DELIMITER E'\\t')");
+
+		private final String options;
+
+		private Format(final String options) {
+			this.options = options;
+		}
+
+		public String getOptions() {
+			return options;
+		}
+	}
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private final Configuration configuration;
+	private final DbInterface db;
+
+	public CopyExporter(final Configuration configuration) {
+		this.configuration = configuration;
+		this.db = new DbInterface(configuration);
+	}
+
+	public Result exportTable(final String tableName, final File file, final Format format)
+			throws SQLException, IOException {
+		return exportQuery("select * from " + tableName, file, format);
+	}
+
+	public Result exportQuery(final String query, final File file, final Format format)
+			throws SQLException, IOException {
+		final OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+		try {
+			final Result result = exportQuery(query, out, format);
+			configuration.getLogger().log("Exported to " + file + ": " + result);
+			return result;
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	public Result exportTable(final String tableName, final OutputStream out,
+			final Format format) throws SQLException, IOException {
+		return exportQuery("select * from " + tableName, out, format);
+	}
+
+	/**
+	 * Copies the rows of the query to {@code out}, which is flushed but not
+	 * closed.
+	 */
+	public Result exportQuery(final String query, final OutputStream out, final Format format)
+			throws SQLException, IOException {
+		final String copy = "COPY (" + query + ") TO STDOUT " + format.getOptions();
+		final CountingOutputStream counter = new CountingOutputStream(out);
+		final long start = System.nanoTime();
+		final long rows;
+		final Connection connection = db.getReadConnection();
+		try {
+			final CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+			rows = copyManager.copyOut(copy, counter);
+		}
+		finally {
+			connection.close();
+		}
+		counter.flush();
+		return new Result(rows, counter.getCount(), System.nanoTime() - start);
+	}
+
+	private static final class CountingOutputStream extends FilterOutputStream {
+		private long count;
+
+		CountingOutputStream(final OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		long getCount() {
+			return count;
+		}
+	}
+
+	public static final class Result {
+		private final long rows;
+		private final long bytes;
+		private final long nanos;
+
+		Result(final long rows, final long bytes, final long nanos) {
+			this.rows = rows;
+			this.bytes = bytes;
+			this.nanos = nanos;
+		}
+
+		public long getRows() {
+			return rows;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		public double getBytesPerSecond() {
+			return nanos == 0L ? bytes : bytes * 1e9 / nanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d rows, %d bytes in %dms (%.1f MB/s)", rows, bytes,
+				nanos / 1000000L, getBytesPerSecond() / (1024 * 1024));
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package com.winepos.birt.util;
 
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
 import java.net.SocketException;
 import java.sql.Array;
 import java.sql.Blob;
@@ -11,234 +12,850 @@ import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.NClob;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLClientInfoException;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
 import java.sql.SQLWarning;
 import java.sql.SQLXML;
 import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Struct;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
 public class DbConnectionPool implements Serializable {
 	private static final long serialVersionUID = 1L;
 	private static final Logger LOGGER;
+	private static final int WARM_UP_THREADS = 8;
+	private static final int DEFAULT_MAX_CONCURRENT_CREATIONS = WARM_UP_THREADS;
+	private static final double DEFAULT_LEAK_DETECTION_SAMPLE_RATE = 0.05;
 	private final String uRL;
 	private final String username;
 	private final String password;
 	private final String driver;
-	private final Queue<PooledConnection> connections;
-	private long openConnectionIndex;
-	private final Map<Long, OpenConnectionInfo> openConnections;
-	private long timeout;
+	private final Deque<PooledConnection> connections;
+	private final AtomicLong openConnectionIndex;
+	private final ConcurrentMap<Long, OpenConnectionInfo> openConnections;
+	private volatile long timeout;
+	private final int maxSize;
+	private final int minIdle;
+	private final long acquireTimeout;
+	private final Semaphore checkoutPermits;
+	private final AtomicInteger totalConnectionCount;
+	private final Object slotFreed;
+	private final AtomicInteger slotWaiters;
+	private volatile long validationInterval;
+	private volatile int validationTimeout;
+	private volatile long lastValidation;
+	private volatile long leakDetectionThreshold;
+	private volatile double leakDetectionSampleRate;
+	private volatile int statementCacheSize;
+	private final LongAdder statementCacheHits;
+	private final LongAdder statementCacheMisses;
+	private final DbConnectionPoolMetrics metrics;
+	private transient volatile ScheduledExecutorService housekeeper;
+	private transient volatile ObjectName objectName;
+	private volatile long warmUpTime;
+	private volatile int warmUpFailures;
+	private volatile Semaphore creationPermits;
+	private int maxConcurrentCreations;
+	private volatile int connectRetries;
+	private volatile long retryBackoff;
+	private volatile long retryBackoffMax;
+	private volatile int circuitBreakerThreshold;
+	private volatile long circuitBreakerResetTimeout;
+	private final AtomicInteger consecutiveConnectFailures;
+	private final AtomicBoolean circuitProbe;
+	private volatile long circuitOpenUntil;
+	private volatile boolean draining;
 	static {
 		LOGGER = Logger.getLogger(DbConnectionPool.class.getName());
 	}
 
 	public DbConnectionPool(final String dbDriver, final String dbName, final String dbUsername,
 			final String dbPassword) throws ClassNotFoundException, SQLException {
-		this.connections = new LinkedList<PooledConnection>();
-		this.openConnectionIndex = 0L;
-		this.openConnections = new HashMap<Long, OpenConnectionInfo>();
+		this(dbDriver, dbName, dbUsername, dbPassword, 0, 0, 0L);
+	}
+
+	/**
+	 * @param maxSize maximum number of physical connections, 0 for unbounded
+	 * @param minIdle number of idle connections to open up front
+	 * @param acquireTimeout milliseconds to wait for a connection when the pool is
+	 *            exhausted, 0 to wait indefinitely; ignored when unbounded
+	 */
+	public DbConnectionPool(final String dbDriver, final String dbName, final String dbUsername,
+			final String dbPassword, final int maxSize, final int minIdle,
+			final long acquireTimeout) throws ClassNotFoundException, SQLException {
+		this.connections = new ConcurrentLinkedDeque<PooledConnection>();
+		this.openConnectionIndex = new AtomicLong();
+		this.openConnections = new ConcurrentHashMap<Long, OpenConnectionInfo>();
 		this.timeout = 900000L;
 		this.driver = dbDriver;
 		this.uRL = dbName;
 		this.username = dbUsername;
 		this.password = dbPassword;
+		this.maxSize = Math.max(maxSize, 0);
+		this.minIdle = this.maxSize > 0 ? Math.min(Math.max(minIdle, 0), this.maxSize)
+			: Math.max(minIdle, 0);
+		this.acquireTimeout = Math.max(acquireTimeout, 0L);
+		this.checkoutPermits = this.maxSize > 0 ? new Semaphore(this.maxSize, true) : null;
+		this.totalConnectionCount = new AtomicInteger();
+		this.slotFreed = new Object();
+		this.slotWaiters = new AtomicInteger();
+		this.validationInterval = 0L;
+		this.validationTimeout = 5;
+		this.lastValidation = System.currentTimeMillis();
+		this.leakDetectionThreshold = 0L;
+		this.leakDetectionSampleRate = DEFAULT_LEAK_DETECTION_SAMPLE_RATE;
+		this.statementCacheSize = 0;
+		this.statementCacheHits = new LongAdder();
+		this.statementCacheMisses = new LongAdder();
+		this.creationPermits = new Semaphore(DEFAULT_MAX_CONCURRENT_CREATIONS);
+		this.maxConcurrentCreations = DEFAULT_MAX_CONCURRENT_CREATIONS;
+		this.connectRetries = 5;
+		this.retryBackoff = 100L;
+		this.retryBackoffMax = 5000L;
+		this.circuitBreakerThreshold = 5;
+		this.circuitBreakerResetTimeout = 10000L;
+		this.consecutiveConnectFailures = new AtomicInteger();
+		this.circuitProbe = new AtomicBoolean();
+		this.circuitOpenUntil = 0L;
+		this.metrics = new DbConnectionPoolMetrics(this);
 		this.validateConnection();
+		this.warmUp();
 	}
 
+	/**
+	 * Opens a connection to check that the database can be reached. Rather than
+	 * being thrown away, the connection goes into the idle queue when the pool
+	 * has fewer than {@code minIdle}, or no, idle connections.
+	 */
 	public final void validateConnection() throws ClassNotFoundException, SQLException {
 		DbConnectionPool.LOGGER.log(Level.FINEST, "Testing connection pool");
 		DbConnectionPool.LOGGER.log(Level.FINEST, "Instantiating " + this.driver + "\n");
 		Class.forName(this.driver);
-		DbConnectionPool.LOGGER.log(Level.FINEST, "Connecting");
-		final Connection connection = DriverManager.getConnection(this.uRL, this.username,
-			this.password);
+		final Connection connection = this.openPhysicalConnection();
+		boolean kept = false;
 		try {
 			final DatabaseMetaData dbmd = connection.getMetaData();
 			DbConnectionPool.LOGGER.log(Level.FINEST,
 				"Connection to " + dbmd.getDatabaseProductName() + " "
 					+ dbmd.getDatabaseProductVersion() + " successful.");
+			if (this.connections.size() < Math.max(this.minIdle, 1)
+				&& this.reserveConnectionSlot()) {
+				this.connections.offerLast(new PooledConnection(connection,
+						this.openConnectionIndex.getAndIncrement()));
+				kept = true;
+			}
 		}
 		finally {
-			connection.close();
+			if (!kept) {
+				connection.close();
+			}
 		}
-		connection.close();
 	}
 
-	public final void clear() throws SQLException {
-		synchronized (this) {
-			while (!this.connections.isEmpty()) {
-				final PooledConnection connection = this.connections.remove();
-				connection.reallyClose();
-			}
+	/**
+	 * Opens idle connections until there are at least {@code minIdle} of them or
+	 * the pool is full.
+	 */
+	public final void ensureMinIdle() throws SQLException {
+		while (this.connections.size() < this.minIdle && this.reserveConnectionSlot()) {
+			this.connections.offerLast(this.openIdleConnection());
+			this.signalSlotFreed();
 		}
 	}
 
-	public final PooledConnection getConnection(final int transactionIsolation,
-			final boolean readOnly, final boolean autoCommit) throws SQLException {
-		while (true) {
-			PooledConnection oldConnection;
-			final long timeout;
-			synchronized (this) {
-				if (this.connections.isEmpty()) {
-					oldConnection = null;
-				}
-				else {
-					oldConnection = this.connections.remove();
-				}
-				timeout = this.timeout;
-			}
-			if (oldConnection == null) {
-				DbConnectionPool.LOGGER.log(Level.FINEST, "Connecting");
-				SQLException exception = null;
-				int retryCount = 0;
-				while (retryCount < 10) {
-					Connection newConnection;
-					try {
-						newConnection = DriverManager.getConnection(this.uRL, this.username,
-							this.password);
+	/**
+	 * Opens a connection for a slot that has already been reserved, giving the
+	 * slot back if that fails.
+	 */
+	private PooledConnection openIdleConnection() throws SQLException {
+		try {
+			return new PooledConnection(this.openPhysicalConnection(),
+					this.openConnectionIndex.getAndIncrement());
+		}
+		catch (final SQLException e) {
+			this.totalConnectionCount.decrementAndGet();
+			this.signalSlotFreed();
+			throw e;
+		}
+	}
+
+	/**
+	 * Does what {@link #ensureMinIdle()} does but opens up to
+	 * {@code WARM_UP_THREADS} connections at once, so that a large
+	 * {@code minIdle} costs about as much startup time as a small one. A
+	 * connection that fails to open is logged and left for the housekeeper.
+	 *
+	 * @return the number of connections that failed to open
+	 */
+	public final int warmUp() {
+		final long start = System.nanoTime();
+		final int needed = this.minIdle - this.connections.size();
+		int opened = 0;
+		int failures = 0;
+		if (needed > 0) {
+			final ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(needed, WARM_UP_THREADS), new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable runnable) {
+						final Thread thread = new Thread(runnable,
+								"DbConnectionPool-warmup " + DbConnectionPool.this.uRL);
+						thread.setDaemon(true);
+						return thread;
 					}
-					catch (final SQLException e) {
-						if (!(e.getCause() instanceof SocketException)) {
-							throw e;
-						}
-						exception = e;
-						DbConnectionPool.LOGGER.log(Level.FINEST, "Retrying", e);
-						try {
-							Thread.sleep(1000L);
+				});
+			try {
+				final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(needed);
+				for (int i = 0; i < needed; i++) {
+					futures.add(executor.submit(new Callable<Boolean>() {
+						@Override
+						public Boolean call() throws SQLException {
+							if (!DbConnectionPool.this.reserveConnectionSlot()) {
+								return Boolean.FALSE;
+							}
+							DbConnectionPool.this.connections.offerLast(
+								DbConnectionPool.this.openIdleConnection());
+							DbConnectionPool.this.signalSlotFreed();
+							return Boolean.TRUE;
 						}
-						catch (final InterruptedException ex) {
+					}));
+				}
+				for (final Future<Boolean> future : futures) {
+					try {
+						if (future.get().booleanValue()) {
+							opened++;
 						}
-						++retryCount;
-						newConnection = null;
 					}
-					if (newConnection != null) {
-						newConnection.setAutoCommit(true);
-						newConnection.setTransactionIsolation(transactionIsolation);
-						newConnection.setReadOnly(readOnly);
-						newConnection.setAutoCommit(autoCommit);
-						final long index = this.incrementOpenConnectionCount();
-						return new PooledConnection(newConnection, index);
+					catch (final ExecutionException e) {
+						failures++;
+						DbConnectionPool.LOGGER.log(Level.WARNING,
+							"Unable to open connection while warming up " + this.uRL,
+							e.getCause());
 					}
 				}
-				if (exception != null) {
-					throw exception;
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			finally {
+				executor.shutdownNow();
+			}
+		}
+		this.warmUpTime = (System.nanoTime() - start) / 1000000L;
+		this.warmUpFailures = failures;
+		DbConnectionPool.LOGGER.log(Level.INFO, "Warmed up " + opened + " connections in "
+			+ this.warmUpTime + "ms, " + failures + " failed: " + this);
+		return failures;
+	}
+
+	/**
+	 * Starts a daemon thread that evicts timed out idle connections, validates
+	 * idle connections every {@code validationInterval} milliseconds and tops
+	 * the pool back up to {@code minIdle}. While it runs, checkout no longer
+	 * checks the idle timeout itself.
+	 */
+	public final synchronized void startHousekeeper(final long period) {
+		if (this.housekeeper != null) {
+			return;
+		}
+		final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable,
+							"DbConnectionPool-housekeeper " + DbConnectionPool.this.uRL);
+					thread.setDaemon(true);
+					return thread;
 				}
+			});
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				DbConnectionPool.this.housekeep();
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+		this.housekeeper = executor;
+	}
+
+	public final synchronized void stopHousekeeper() {
+		if (this.housekeeper != null) {
+			this.housekeeper.shutdownNow();
+			this.housekeeper = null;
+		}
+	}
+
+	public final void shutdown() throws SQLException {
+		this.stopHousekeeper();
+		this.unregisterMBean();
+		this.clear();
+	}
+
+	/**
+	 * Shuts the pool down once the connections that are checked out have been
+	 * given back, waiting at most {@code timeout} milliseconds. From now on
+	 * checkouts are refused, idle connections are closed at once and connections
+	 * given back are closed instead of pooled.
+	 *
+	 * @return false if connections were still checked out after the timeout
+	 */
+	public final boolean drain(final long timeout) throws SQLException {
+		this.draining = true;
+		this.shutdown();
+		final long deadline = System.currentTimeMillis() + timeout;
+		while (!this.openConnections.isEmpty() && System.currentTimeMillis() < deadline) {
+			try {
+				Thread.sleep(100L);
 			}
-			if (oldConnection != null) {
-				if (oldConnection.isClosed()) {
-					DbConnectionPool.LOGGER.log(Level.WARNING,
-						"Pooled connection was already closed");
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		// In case a connection was given back while draining was being set.
+		this.clear();
+		return this.openConnections.isEmpty();
+	}
+
+	public final boolean isDraining() {
+		return this.draining;
+	}
+
+	/**
+	 * Registers the pool's metrics with the platform MBean server under
+	 * {@code com.winepos.birt.util:type=DbConnectionPool,name=<name>}.
+	 */
+	public final synchronized void registerMBean(final String name) throws JMException {
+		if (this.objectName != null) {
+			return;
+		}
+		final ObjectName objectName = new ObjectName(
+			"com.winepos.birt.util:type=DbConnectionPool,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this.metrics, objectName);
+		this.objectName = objectName;
+	}
+
+	public final synchronized void unregisterMBean() {
+		if (this.objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+		}
+		catch (final JMException e) {
+			DbConnectionPool.LOGGER.log(Level.WARNING, "Unable to unregister " + this.objectName,
+				e);
+		}
+		this.objectName = null;
+	}
+
+	public final DbConnectionPoolMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	final void housekeep() {
+		try {
+			final long now = System.currentTimeMillis();
+			final long timeout = this.timeout;
+			final long validationInterval = this.validationInterval;
+			final boolean validate = validationInterval > 0L
+				&& now - this.lastValidation >= validationInterval;
+			int evicted = 0;
+			int invalid = 0;
+			final List<PooledConnection> idle = new ArrayList<PooledConnection>(this.connections);
+			for (final PooledConnection connection : idle) {
+				final boolean expired = timeout != 0L
+					&& now - connection.getLastAccess() >= timeout;
+				if (!expired && !validate) {
+					continue;
+				}
+				// Take the connection out of the idle queue first so that nobody
+				// checks it out while we are looking at it.
+				if (!this.connections.remove(connection)) {
+					continue;
+				}
+				if (expired) {
+					this.discard(connection);
+					evicted++;
+				}
+				else if (this.isValid(connection)) {
+					this.connections.offerLast(connection);
+					this.signalSlotFreed();
 				}
 				else {
-					Label_0430: {
-						Label_0418: {
-							if (timeout != 0L) {
-								if (System.currentTimeMillis()
-									- oldConnection.getLastAccess() >= timeout) {
-									break Label_0418;
-								}
-							}
-							try {
-								oldConnection.setAutoCommit(true);
-								oldConnection.setTransactionIsolation(transactionIsolation);
-								oldConnection.setReadOnly(readOnly);
-								oldConnection.setAutoCommit(autoCommit);
-								synchronized (this) {
-									final Long key = Long.valueOf(oldConnection.getIndex());
-									final OpenConnectionInfo info = this.openConnections.get(key);
-									if (info != null) {
-										DbConnectionPool.LOGGER.log(Level.WARNING,
-											"Overwriting open connection info: " + key + " "
-												+ info);
-									}
-									this.openConnections.put(key, new OpenConnectionInfo());
-								}
-								return oldConnection;
-							}
-							catch (final Exception e2) {
-								DbConnectionPool.LOGGER.log(Level.SEVERE,
-									"Unable to reuse DB connection", e2);
-								break Label_0430;
-							}
-						}
-						DbConnectionPool.LOGGER.log(Level.FINEST, "DB connection timed out");
-						try {
-							oldConnection.reallyClose();
-						}
-						catch (final Exception e2) {
-							DbConnectionPool.LOGGER.log(Level.SEVERE,
-								"Unable to really close DB connection", e2);
-						}
-					}
+					this.discard(connection);
+					invalid++;
 				}
 			}
+			if (validate) {
+				this.lastValidation = now;
+			}
+			this.metrics.timeoutEvictions.add(evicted);
+			this.metrics.invalidEvictions.add(invalid);
+			if (evicted > 0 || invalid > 0) {
+				DbConnectionPool.LOGGER.log(Level.FINEST, "Evicted " + evicted
+					+ " timed out and " + invalid + " invalid connections from " + this);
+			}
+			this.ensureMinIdle();
+			this.detectLeaks();
+		}
+		catch (final Exception e) {
+			DbConnectionPool.LOGGER.log(Level.WARNING, "Connection pool housekeeping failed", e);
 		}
 	}
 
-	private long incrementOpenConnectionCount() {
-		synchronized (this) {
-			final long index = this.openConnectionIndex++;
-			final Long key = Long.valueOf(index);
-			final OpenConnectionInfo info = this.openConnections.get(key);
-			if (info != null) {
+	private boolean isValid(final PooledConnection connection) {
+		try {
+			return !connection.isClosed() && connection.isValid(this.validationTimeout);
+		}
+		catch (final SQLException e) {
+			DbConnectionPool.LOGGER.log(Level.FINEST, "Pooled connection failed validation", e);
+			return false;
+		}
+	}
+
+	public final void clear() throws SQLException {
+		PooledConnection connection;
+		while ((connection = this.connections.pollFirst()) != null) {
+			this.totalConnectionCount.decrementAndGet();
+			connection.reallyClose();
+		}
+	}
+
+	public final PooledConnection getConnection(final int transactionIsolation,
+			final boolean readOnly, final boolean autoCommit) throws SQLException {
+		if (this.draining) {
+			throw new SQLNonTransientConnectionException("Connection pool for " + this.uRL
+				+ " has been retired");
+		}
+		final long start = System.nanoTime();
+		if (this.checkoutPermits == null) {
+			final PooledConnection connection = this.checkout(transactionIsolation, readOnly,
+				autoCommit);
+			this.metrics.checkoutLatency.record(System.nanoTime() - start);
+			return connection;
+		}
+		try {
+			if (this.acquireTimeout == 0L) {
+				this.checkoutPermits.acquire();
+			}
+			else if (!this.checkoutPermits.tryAcquire(this.acquireTimeout,
+				TimeUnit.MILLISECONDS)) {
+				this.metrics.acquireTimeouts.increment();
+				throw new SQLTransientConnectionException("Timed out after "
+					+ this.acquireTimeout + "ms waiting for a connection from " + this);
+			}
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLTransientConnectionException("Interrupted waiting for a connection",
+					e);
+		}
+		this.metrics.waitTime.record(System.nanoTime() - start);
+		boolean checkedOut = false;
+		try {
+			final PooledConnection connection = this.checkout(transactionIsolation, readOnly,
+				autoCommit);
+			checkedOut = true;
+			this.metrics.checkoutLatency.record(System.nanoTime() - start);
+			return connection;
+		}
+		finally {
+			if (!checkedOut) {
+				this.checkoutPermits.release();
+			}
+		}
+	}
+
+	private PooledConnection checkout(final int transactionIsolation, final boolean readOnly,
+			final boolean autoCommit) throws SQLException {
+		while (true) {
+			final PooledConnection oldConnection = this.connections.pollFirst();
+			final long timeout = this.housekeeper == null ? this.timeout : 0L;
+			if (oldConnection == null) {
+				if (!this.reserveConnectionSlot()) {
+					// The pool is full but we hold a checkout permit, so an idle
+					// connection is out with the housekeeper, or being opened by it.
+					this.awaitSlot();
+					continue;
+				}
+				final PooledConnection newConnection;
+				try {
+					newConnection = new PooledConnection(this.openPhysicalConnection(),
+							this.openConnectionIndex.getAndIncrement());
+				}
+				catch (final SQLException e) {
+					this.totalConnectionCount.decrementAndGet();
+					throw e;
+				}
+				try {
+					newConnection.applySessionState(transactionIsolation, readOnly, autoCommit);
+				}
+				catch (final SQLException e) {
+					this.discard(newConnection);
+					throw e;
+				}
+				this.registerOpenConnection(newConnection);
+				return newConnection;
+			}
+			if (oldConnection.isClosed()) {
 				DbConnectionPool.LOGGER.log(Level.WARNING,
-					"Overwriting open connection info: " + key + " " + info);
+					"Pooled connection was already closed");
+				this.metrics.alreadyClosed.increment();
+				this.totalConnectionCount.decrementAndGet();
+				continue;
+			}
+			if (timeout != 0L
+				&& System.currentTimeMillis() - oldConnection.getLastAccess() >= timeout) {
+				DbConnectionPool.LOGGER.log(Level.FINEST, "DB connection timed out");
+				this.metrics.timeoutEvictions.increment();
+				this.discard(oldConnection);
+				continue;
+			}
+			try {
+				oldConnection.applySessionState(transactionIsolation, readOnly, autoCommit);
+			}
+			catch (final Exception e) {
+				DbConnectionPool.LOGGER.log(Level.SEVERE, "Unable to reuse DB connection", e);
+				this.discard(oldConnection);
+				continue;
 			}
-			this.openConnections.put(key, new OpenConnectionInfo());
-			return index;
+			this.registerOpenConnection(oldConnection);
+			return oldConnection;
 		}
 	}
 
+	/**
+	 * Waits until a connection is put back in the idle queue or a slot is freed.
+	 * The wait is bounded in case a change is not signalled; the caller looks
+	 * again either way.
+	 */
+	private void awaitSlot() throws SQLException {
+		this.slotWaiters.incrementAndGet();
+		try {
+			synchronized (this.slotFreed) {
+				if (this.connections.isEmpty()
+					&& this.totalConnectionCount.get() >= this.maxSize) {
+					this.slotFreed.wait(100L);
+				}
+			}
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLTransientConnectionException("Interrupted waiting for a connection",
+					e);
+		}
+		finally {
+			this.slotWaiters.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Wakes checkouts waiting in {@link #awaitSlot()}, without taking the lock
+	 * when there are none.
+	 */
+	private void signalSlotFreed() {
+		if (this.slotWaiters.get() > 0) {
+			synchronized (this.slotFreed) {
+				this.slotFreed.notifyAll();
+			}
+		}
+	}
+
+	private boolean reserveConnectionSlot() {
+		if (this.maxSize == 0) {
+			this.totalConnectionCount.incrementAndGet();
+			return true;
+		}
+		while (true) {
+			final int count = this.totalConnectionCount.get();
+			if (count >= this.maxSize) {
+				return false;
+			}
+			if (this.totalConnectionCount.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Opens a physical connection. At most {@code maxConcurrentCreations} are
+	 * attempted at once, network failures are retried with jittered exponential
+	 * backoff, and while the circuit breaker is open this fails at once with a
+	 * {@link CircuitOpenException}.
+	 */
+	private Connection openPhysicalConnection() throws SQLException {
+		DbConnectionPool.LOGGER.log(Level.FINEST, "Connecting");
+		SQLException exception = null;
+		for (int attempt = 0; attempt <= this.connectRetries; attempt++) {
+			if (attempt > 0) {
+				this.metrics.creationRetries.increment();
+				DbConnectionPool.LOGGER.log(Level.FINEST, "Retrying", exception);
+				this.backOff(attempt);
+			}
+			final boolean probe = this.checkCircuit();
+			final Semaphore permits = this.creationPermits;
+			try {
+				this.acquireCreationPermit(permits);
+			}
+			catch (final SQLException e) {
+				if (probe) {
+					// No attempt was made; let the next caller probe instead.
+					this.circuitProbe.set(false);
+				}
+				throw e;
+			}
+			final long start = System.nanoTime();
+			try {
+				final Connection connection = DriverManager.getConnection(this.uRL,
+					this.username, this.password);
+				this.metrics.creationTime.record(System.nanoTime() - start);
+				this.closeCircuit();
+				return connection;
+			}
+			catch (final SQLException e) {
+				this.metrics.creationFailures.increment();
+				this.recordConnectFailure(probe);
+				if (!(e.getCause() instanceof SocketException)) {
+					throw e;
+				}
+				exception = e;
+			}
+			catch (final RuntimeException e) {
+				this.recordConnectFailure(probe);
+				throw e;
+			}
+			finally {
+				permits.release();
+			}
+		}
+		throw exception;
+	}
+
+	private void acquireCreationPermit(final Semaphore permits) throws SQLException {
+		try {
+			if (this.acquireTimeout == 0L) {
+				permits.acquire();
+			}
+			else if (!permits.tryAcquire(this.acquireTimeout, TimeUnit.MILLISECONDS)) {
+				throw new SQLTransientConnectionException("Timed out after "
+					+ this.acquireTimeout + "ms waiting to open a connection to " + this.uRL);
+			}
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLTransientConnectionException("Interrupted waiting to connect", e);
+		}
+	}
+
+	/**
+	 * Sleeps for half the backoff delay plus a random part of the other half, so
+	 * that callers that failed together do not all retry together.
+	 */
+	private void backOff(final int attempt) throws SQLException {
+		final long delay = Math.min(this.retryBackoffMax,
+			this.retryBackoff << Math.min(attempt - 1, 30));
+		final long sleep = delay / 2L + ThreadLocalRandom.current().nextLong(delay / 2L + 1L);
+		try {
+			Thread.sleep(sleep);
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLTransientConnectionException("Interrupted waiting to reconnect", e);
+		}
+	}
+
+	/**
+	 * @return true if the circuit is open but due for another try, and this
+	 *         caller is the one to try
+	 */
+	private boolean checkCircuit() throws CircuitOpenException {
+		final long openUntil = this.circuitOpenUntil;
+		if (openUntil == 0L) {
+			return false;
+		}
+		if (System.currentTimeMillis() >= openUntil && this.circuitProbe.compareAndSet(false,
+			true)) {
+			return true;
+		}
+		this.metrics.circuitRejections.increment();
+		throw new CircuitOpenException("Not connecting to " + this.uRL + " after "
+			+ this.consecutiveConnectFailures.get() + " failures; next try in "
+			+ Math.max(openUntil - System.currentTimeMillis(), 0L) + "ms");
+	}
+
+	private void closeCircuit() {
+		this.consecutiveConnectFailures.set(0);
+		if (this.circuitOpenUntil != 0L) {
+			this.circuitOpenUntil = 0L;
+			DbConnectionPool.LOGGER.log(Level.INFO, "Connected again to " + this.uRL);
+		}
+		this.circuitProbe.set(false);
+	}
+
+	private void recordConnectFailure(final boolean probe) {
+		final int failures = this.consecutiveConnectFailures.incrementAndGet();
+		final int threshold = this.circuitBreakerThreshold;
+		if (probe || threshold > 0 && failures >= threshold) {
+			final boolean wasClosed = this.circuitOpenUntil == 0L;
+			this.circuitOpenUntil = System.currentTimeMillis()
+				+ this.circuitBreakerResetTimeout;
+			if (wasClosed) {
+				DbConnectionPool.LOGGER.log(Level.WARNING, "Unable to connect to " + this.uRL
+					+ " " + failures + " times in a row, failing fast for "
+					+ this.circuitBreakerResetTimeout + "ms");
+			}
+		}
+		if (probe) {
+			this.circuitProbe.set(false);
+		}
+	}
+
+	private void discard(final PooledConnection connection) {
+		this.totalConnectionCount.decrementAndGet();
+		this.signalSlotFreed();
+		try {
+			connection.reallyClose();
+		}
+		catch (final Exception e) {
+			DbConnectionPool.LOGGER.log(Level.SEVERE, "Unable to really close DB connection", e);
+		}
+	}
+
+	private void registerOpenConnection(final PooledConnection connection) {
+		final Long key = Long.valueOf(connection.getIndex());
+		final OpenConnectionInfo info = this.openConnections.put(key,
+			this.newOpenConnectionInfo());
+		if (info != null) {
+			DbConnectionPool.LOGGER.log(Level.WARNING,
+				"Overwriting open connection info: " + key + " " + info);
+		}
+	}
+
+	private OpenConnectionInfo newOpenConnectionInfo() {
+		final boolean captureStackTrace = this.leakDetectionThreshold > 0L
+			&& this.leakDetectionSampleRate > 0.0
+			&& (this.leakDetectionSampleRate >= 1.0
+				|| ThreadLocalRandom.current().nextDouble() < this.leakDetectionSampleRate);
+		return new OpenConnectionInfo(captureStackTrace);
+	}
+
+	/**
+	 * Logs each checked out connection that has been held longer than the leak
+	 * detection threshold, once per checkout.
+	 */
+	final int detectLeaks() {
+		final long threshold = this.leakDetectionThreshold;
+		if (threshold <= 0L) {
+			return 0;
+		}
+		final long now = System.currentTimeMillis();
+		int leaks = 0;
+		for (final Map.Entry<Long, OpenConnectionInfo> entry : this.openConnections.entrySet()) {
+			final OpenConnectionInfo info = entry.getValue();
+			if (info.leakReported || now - info.timestamp < threshold) {
+				continue;
+			}
+			info.leakReported = true;
+			leaks++;
+			this.metrics.leaksDetected.increment();
+			DbConnectionPool.LOGGER.log(Level.WARNING,
+				"Possible connection leak: connection " + entry.getKey() + " held for "
+					+ (now - info.timestamp) + "ms"
+					+ (info.hasStackTrace() ? "\n" + info
+						: " (stack trace not sampled)"));
+		}
+		return leaks;
+	}
+
 	protected final void add(final PooledConnection connection) {
-		synchronized (this) {
-			final OpenConnectionInfo info = this.openConnections.remove(
-				Long.valueOf(connection.getIndex()));
-			if (info == null) {
-				DbConnectionPool.LOGGER.log(Level.WARNING,
-					"adding orphaned connection: " + connection.getIndex());
+		this.release(connection, true);
+	}
+
+	private void release(final PooledConnection connection, final boolean reusable) {
+		final OpenConnectionInfo info = this.openConnections.remove(
+			Long.valueOf(connection.getIndex()));
+		if (info == null) {
+			DbConnectionPool.LOGGER.log(Level.WARNING,
+				"adding orphaned connection: " + connection.getIndex());
+		}
+		else {
+			this.metrics.holdTime.record(System.nanoTime() - info.nanoTime);
+			if (reusable && !this.draining) {
+				this.connections.offerFirst(connection);
+				this.signalSlotFreed();
 			}
 			else {
-				this.connections.offer(connection);
+				this.discard(connection);
+			}
+			if (this.checkoutPermits != null) {
+				this.checkoutPermits.release();
 			}
 		}
 	}
 
 	public final long getOpenConnectionIndex() {
-		synchronized (this) {
-			return this.openConnectionIndex;
-		}
+		return this.openConnectionIndex.get();
 	}
 
 	public final OpenConnectionInfo getOpenConnectionInfo(final long index) {
-		synchronized (this) {
-			return this.openConnections.get(Long.valueOf(index));
-		}
+		return this.openConnections.get(Long.valueOf(index));
 	}
 
 	public final int getOpenConnectionCount() {
-		synchronized (this) {
-			return this.openConnections.size();
-		}
+		return this.openConnections.size();
 	}
 
 	public final int getPooledConnectionCount() {
-		synchronized (this) {
-			return this.connections.size();
-		}
+		return this.connections.size();
+	}
+
+	public final int getTotalConnectionCount() {
+		return this.totalConnectionCount.get();
+	}
+
+	/**
+	 * @return milliseconds the last {@link #warmUp()} took
+	 */
+	public final long getWarmUpTime() {
+		return this.warmUpTime;
+	}
+
+	public final int getWarmUpFailures() {
+		return this.warmUpFailures;
 	}
 
 	@Override
@@ -247,29 +864,178 @@ public class DbConnectionPool implements Serializable {
 		buf.append("DB ");
 		buf.append(this.uRL);
 		buf.append(" ");
-		synchronized (this) {
-			buf.append("open: ");
-			buf.append(this.openConnections.size());
-			buf.append(", pooled: ");
-			buf.append(this.connections.size());
-			buf.append(", next: ");
-			buf.append(this.openConnectionIndex);
+		buf.append("open: ");
+		buf.append(this.openConnections.size());
+		buf.append(", pooled: ");
+		buf.append(this.connections.size());
+		buf.append(", next: ");
+		buf.append(this.openConnectionIndex.get());
+		if (this.maxSize > 0) {
+			buf.append(", max: ");
+			buf.append(this.maxSize);
 		}
 		return buf.toString();
 	}
 
 	public final long getTimeout() {
-		synchronized (this) {
-			return this.timeout;
-		}
+		return this.timeout;
 	}
 
 	public final void setTimeout(final long timeout) {
-		synchronized (this) {
-			this.timeout = timeout;
+		this.timeout = timeout;
+	}
+
+	public final long getValidationInterval() {
+		return this.validationInterval;
+	}
+
+	public final void setValidationInterval(final long validationInterval) {
+		this.validationInterval = validationInterval;
+	}
+
+	public final int getValidationTimeout() {
+		return this.validationTimeout;
+	}
+
+	public final void setValidationTimeout(final int validationTimeout) {
+		this.validationTimeout = validationTimeout;
+	}
+
+	public final long getLeakDetectionThreshold() {
+		return this.leakDetectionThreshold;
+	}
+
+	/**
+	 * @param leakDetectionThreshold milliseconds a connection may be held before
+	 *            the housekeeper reports it as a possible leak, 0 to disable
+	 */
+	public final void setLeakDetectionThreshold(final long leakDetectionThreshold) {
+		this.leakDetectionThreshold = leakDetectionThreshold;
+	}
+
+	public final double getLeakDetectionSampleRate() {
+		return this.leakDetectionSampleRate;
+	}
+
+	/**
+	 * @param leakDetectionSampleRate fraction of checkouts, between 0 and 1, that
+	 *            record a stack trace while leak detection is on; 0.05 by default
+	 */
+	public final void setLeakDetectionSampleRate(final double leakDetectionSampleRate) {
+		this.leakDetectionSampleRate = leakDetectionSampleRate;
+	}
+
+	public final int getStatementCacheSize() {
+		return this.statementCacheSize;
+	}
+
+	/**
+	 * @param statementCacheSize number of prepared statements each physical
+	 *            connection keeps for reuse, 0 to disable; connections that
+	 *            already have a cache keep their current size
+	 */
+	public final void setStatementCacheSize(final int statementCacheSize) {
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	public final long getStatementCacheHits() {
+		return this.statementCacheHits.sum();
+	}
+
+	public final long getStatementCacheMisses() {
+		return this.statementCacheMisses.sum();
+	}
+
+	public final int getMaxConcurrentCreations() {
+		return this.maxConcurrentCreations;
+	}
+
+	/**
+	 * @param maxConcurrentCreations number of physical connections that may be
+	 *            opening at once; callers beyond that wait their turn
+	 */
+	public final synchronized void setMaxConcurrentCreations(final int maxConcurrentCreations) {
+		final int permits = Math.max(maxConcurrentCreations, 1);
+		if (permits != this.maxConcurrentCreations) {
+			// Attempts already under way give their permit back to the old semaphore.
+			this.creationPermits = new Semaphore(permits);
+			this.maxConcurrentCreations = permits;
 		}
 	}
 
+	public final int getConnectRetries() {
+		return this.connectRetries;
+	}
+
+	/**
+	 * @param connectRetries times a connection that failed with a network error
+	 *            is tried again
+	 */
+	public final void setConnectRetries(final int connectRetries) {
+		this.connectRetries = Math.max(connectRetries, 0);
+	}
+
+	public final long getRetryBackoff() {
+		return this.retryBackoff;
+	}
+
+	/**
+	 * @param retryBackoff milliseconds before the first retry, doubled for each
+	 *            one after that up to {@code retryBackoffMax}
+	 */
+	public final void setRetryBackoff(final long retryBackoff) {
+		this.retryBackoff = Math.max(retryBackoff, 1L);
+	}
+
+	public final long getRetryBackoffMax() {
+		return this.retryBackoffMax;
+	}
+
+	public final void setRetryBackoffMax(final long retryBackoffMax) {
+		this.retryBackoffMax = Math.max(retryBackoffMax, 1L);
+	}
+
+	public final int getCircuitBreakerThreshold() {
+		return this.circuitBreakerThreshold;
+	}
+
+	/**
+	 * @param circuitBreakerThreshold failed connection attempts in a row after
+	 *            which the pool stops trying for {@code circuitBreakerResetTimeout}
+	 *            milliseconds, 0 to keep trying
+	 */
+	public final void setCircuitBreakerThreshold(final int circuitBreakerThreshold) {
+		this.circuitBreakerThreshold = circuitBreakerThreshold;
+	}
+
+	public final long getCircuitBreakerResetTimeout() {
+		return this.circuitBreakerResetTimeout;
+	}
+
+	/**
+	 * @param circuitBreakerResetTimeout milliseconds to fail fast before letting
+	 *            one attempt through to see whether the database is back
+	 */
+	public final void setCircuitBreakerResetTimeout(final long circuitBreakerResetTimeout) {
+		this.circuitBreakerResetTimeout = circuitBreakerResetTimeout;
+	}
+
+	public final boolean isCircuitOpen() {
+		return this.circuitOpenUntil != 0L;
+	}
+
+	public final int getMaxSize() {
+		return this.maxSize;
+	}
+
+	public final int getMinIdle() {
+		return this.minIdle;
+	}
+
+	public final long getAcquireTimeout() {
+		return this.acquireTimeout;
+	}
+
 	public final String getDriver() {
 		return this.driver;
 	}
@@ -286,30 +1052,51 @@ public class DbConnectionPool implements Serializable {
 		return this.username;
 	}
 
-	public synchronized Map<Long, Long> getOpenConnections() {
+	public Map<Long, Long> getOpenConnections() {
 		final Map<Long, Long> map = new HashMap<Long, Long>();
-		for (final Long index : this.openConnections.keySet()) {
-			final OpenConnectionInfo info = this.openConnections.get(index);
-			map.put(index, Long.valueOf(info.timestamp));
+		for (final Map.Entry<Long, OpenConnectionInfo> entry : this.openConnections.entrySet()) {
+			map.put(entry.getKey(), Long.valueOf(entry.getValue().timestamp));
 		}
 		return map;
 	}
 
 	public static final class OpenConnectionInfo {
 		public final long timestamp;
+		private final long nanoTime;
+		private final String threadName;
 		private final List<StackTraceElement> stackTrace;
+		private volatile boolean leakReported;
 
 		public OpenConnectionInfo() {
+			this(true);
+		}
+
+		/**
+		 * @param captureStackTrace whether to record where the connection was checked
+		 *            out; this is by far the most expensive part of a checkout so it
+		 *            is only done for sampled checkouts when leak detection is on
+		 */
+		public OpenConnectionInfo(final boolean captureStackTrace) {
 			this.timestamp = System.currentTimeMillis();
-			final StackTraceElement[] steArray = Thread.currentThread().getStackTrace();
-			final List<StackTraceElement> stackTrace = new ArrayList<StackTraceElement>(
-					steArray.length);
-			StackTraceElement[] array;
-			for (int length = (array = steArray).length, i = 0; i < length; ++i) {
-				final StackTraceElement element = array[i];
-				stackTrace.add(element);
+			this.nanoTime = System.nanoTime();
+			if (captureStackTrace) {
+				final Thread thread = Thread.currentThread();
+				this.threadName = thread.getName();
+				this.stackTrace = Collections.unmodifiableList(
+					Arrays.asList(thread.getStackTrace()));
+			}
+			else {
+				this.threadName = null;
+				this.stackTrace = Collections.emptyList();
 			}
-			this.stackTrace = Collections.unmodifiableList(stackTrace);
+		}
+
+		public List<StackTraceElement> getStackTrace() {
+			return this.stackTrace;
+		}
+
+		public boolean hasStackTrace() {
+			return !this.stackTrace.isEmpty();
 		}
 
 		@Override
@@ -318,6 +1105,11 @@ public class DbConnectionPool implements Serializable {
 			sb.append("Timestamp: ");
 			sb.append(new Date(this.timestamp));
 			sb.append("\n");
+			if (this.threadName != null) {
+				sb.append("Thread: ");
+				sb.append(this.threadName);
+				sb.append("\n");
+			}
 			for (final StackTraceElement element : this.stackTrace) {
 				sb.append(element);
 				sb.append("\n");
@@ -331,12 +1123,28 @@ public class DbConnectionPool implements Serializable {
 		private long lastAccess;
 		private boolean autoCommit;
 		private boolean readOnly;
+		private int transactionIsolation;
+		private String schema;
+		private boolean schemaKnown;
+		private String initialSchema;
+		private boolean schemaDirty;
+		private String catalog;
+		private boolean catalogKnown;
+		private String initialCatalog;
+		private boolean catalogDirty;
 		private final long index;
+		private StatementCache statementCache;
 
 		public PooledConnection(final Connection connection, final long index) {
 			this.lastAccess = System.currentTimeMillis();
+			this.statementCache = null;
 			this.autoCommit = false;
 			this.readOnly = false;
+			this.transactionIsolation = -1;
+			this.schemaKnown = false;
+			this.schemaDirty = false;
+			this.catalogKnown = false;
+			this.catalogDirty = false;
 			this.index = index;
 			this.connection = connection;
 			try {
@@ -353,6 +1161,40 @@ public class DbConnectionPool implements Serializable {
 			}
 		}
 
+		/**
+		 * Brings the connection into the state a borrower asked for, issuing only
+		 * the changes that differ from the locally tracked state.
+		 */
+		void applySessionState(final int transactionIsolation, final boolean readOnly,
+				final boolean autoCommit) throws SQLException {
+			this.setAutoCommit(true);
+			this.setTransactionIsolation(transactionIsolation);
+			this.setReadOnly(readOnly);
+			this.setAutoCommit(autoCommit);
+		}
+
+		/**
+		 * Undoes the session changes the borrower made that the next checkout
+		 * does not set itself. A connection left in manual commit mode is switched
+		 * back to auto commit, which commits any pending work, as checkout used to.
+		 */
+		boolean resetSessionState() {
+			try {
+				this.setAutoCommit(true);
+				if (this.schemaDirty) {
+					this.setSchema(this.initialSchema);
+				}
+				if (this.catalogDirty) {
+					this.setCatalog(this.initialCatalog);
+				}
+				return true;
+			}
+			catch (final SQLException e) {
+				DbConnectionPool.LOGGER.log(Level.WARNING, "Unable to reset DB connection", e);
+				return false;
+			}
+		}
+
 		public void clearPool() throws SQLException {
 			DbConnectionPool.this.clear();
 		}
@@ -374,41 +1216,79 @@ public class DbConnectionPool implements Serializable {
 
 		@Override
 		public PreparedStatement prepareStatement(final String sql) throws SQLException {
-			final PreparedStatement stmt = this.connection.prepareStatement(sql);
-			if (this.connection.getAutoCommit() != this.autoCommit
-				|| this.connection.isReadOnly() != this.readOnly) {
-				final StringBuilder sb = new StringBuilder();
-				String sep = "";
-				if (this.connection.getAutoCommit() != this.autoCommit) {
-					sb.append(sep);
-					sep = " and ";
-					sb.append("autoCommit has changed from " + this.autoCommit);
-				}
-				if (this.connection.isReadOnly() != this.readOnly) {
-					sb.append(sep);
-					sep = " and ";
-					sb.append("readOnly has changed from " + this.readOnly);
+			return this.prepareCachedStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY, -1);
+		}
+
+		private PreparedStatement prepareCachedStatement(final String sql,
+				final int resultSetType, final int resultSetConcurrency,
+				final int resultSetHoldability) throws SQLException {
+			if (this.statementCache == null) {
+				final int statementCacheSize = DbConnectionPool.this.statementCacheSize;
+				if (statementCacheSize > 0) {
+					this.statementCache = new StatementCache(statementCacheSize);
 				}
-				sb.append(" in ");
-				sb.append(stmt);
-				DbConnectionPool.LOGGER.log(Level.WARNING, sb.toString());
 			}
-			return stmt;
+			if (this.statementCache == null) {
+				return this.prepareUncachedStatement(sql, resultSetType, resultSetConcurrency,
+					resultSetHoldability);
+			}
+			final StatementCache.Key key = new StatementCache.Key(sql, resultSetType,
+					resultSetConcurrency, resultSetHoldability);
+			PreparedStatement statement = this.statementCache.take(key);
+			if (statement == null) {
+				DbConnectionPool.this.statementCacheMisses.increment();
+				statement = this.prepareUncachedStatement(sql, resultSetType,
+					resultSetConcurrency, resultSetHoldability);
+			}
+			else {
+				DbConnectionPool.this.statementCacheHits.increment();
+			}
+			return new PooledPreparedStatement(this, statement, this.statementCache, key);
+		}
+
+		private PreparedStatement prepareUncachedStatement(final String sql,
+				final int resultSetType, final int resultSetConcurrency,
+				final int resultSetHoldability) throws SQLException {
+			if (resultSetHoldability != -1) {
+				return this.connection.prepareStatement(sql, resultSetType, resultSetConcurrency,
+					resultSetHoldability);
+			}
+			if (resultSetType != ResultSet.TYPE_FORWARD_ONLY
+				|| resultSetConcurrency != ResultSet.CONCUR_READ_ONLY) {
+				return this.connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+			}
+			return this.connection.prepareStatement(sql);
+		}
+
+		public StatementCache getStatementCache() {
+			return this.statementCache;
 		}
 
 		@Override
 		public void setTransactionIsolation(final int level) throws SQLException {
+			if (level == this.transactionIsolation) {
+				return;
+			}
 			this.connection.setTransactionIsolation(level);
+			this.transactionIsolation = level;
 		}
 
 		@Override
 		public String getCatalog() throws SQLException {
-			return this.connection.getCatalog();
+			if (!this.catalogKnown) {
+				this.catalog = this.connection.getCatalog();
+				this.catalogKnown = true;
+			}
+			return this.catalog;
 		}
 
 		@Override
 		public int getTransactionIsolation() throws SQLException {
-			return this.connection.getTransactionIsolation();
+			if (this.transactionIsolation == -1) {
+				this.transactionIsolation = this.connection.getTransactionIsolation();
+			}
+			return this.transactionIsolation;
 		}
 
 		@Override
@@ -431,7 +1311,7 @@ public class DbConnectionPool implements Serializable {
 
 		@Override
 		public boolean getAutoCommit() throws SQLException {
-			return this.connection.getAutoCommit();
+			return this.autoCommit;
 		}
 
 		@Override
@@ -446,8 +1326,11 @@ public class DbConnectionPool implements Serializable {
 
 		@Override
 		public void setAutoCommit(final boolean autoCommit) throws SQLException {
-			this.autoCommit = autoCommit;
+			if (autoCommit == this.autoCommit) {
+				return;
+			}
 			this.connection.setAutoCommit(autoCommit);
+			this.autoCommit = autoCommit;
 		}
 
 		@Override
@@ -458,8 +1341,11 @@ public class DbConnectionPool implements Serializable {
 
 		@Override
 		public void setReadOnly(final boolean readOnly) throws SQLException {
-			this.readOnly = readOnly;
+			if (readOnly == this.readOnly) {
+				return;
+			}
 			this.connection.setReadOnly(readOnly);
+			this.readOnly = readOnly;
 		}
 
 		@Override
@@ -476,12 +1362,12 @@ public class DbConnectionPool implements Serializable {
 		@Override
 		public PreparedStatement prepareStatement(final String sql, final int resultSetType,
 				final int resultSetConcurrency) throws SQLException {
-			return this.connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+			return this.prepareCachedStatement(sql, resultSetType, resultSetConcurrency, -1);
 		}
 
 		@Override
 		public boolean equals(final Object obj) {
-			return this.connection.equals(obj);
+			return obj == this || this.connection.equals(obj);
 		}
 
 		@Override
@@ -499,7 +1385,7 @@ public class DbConnectionPool implements Serializable {
 		public PreparedStatement prepareStatement(final String sql, final int resultSetType,
 				final int resultSetConcurrency, final int resultSetHoldability)
 				throws SQLException {
-			return this.connection.prepareStatement(sql, resultSetType, resultSetConcurrency,
+			return this.prepareCachedStatement(sql, resultSetType, resultSetConcurrency,
 				resultSetHoldability);
 		}
 
@@ -515,16 +1401,29 @@ public class DbConnectionPool implements Serializable {
 
 		@Override
 		public void setCatalog(final String catalog) throws SQLException {
+			final String current = this.getCatalog();
+			if (catalog == null ? current == null : catalog.equals(current)) {
+				return;
+			}
+			if (!this.catalogDirty) {
+				this.initialCatalog = current;
+			}
 			this.connection.setCatalog(catalog);
+			this.catalog = catalog;
+			this.catalogDirty = catalog == null ? this.initialCatalog != null
+				: !catalog.equals(this.initialCatalog);
 		}
 
 		@Override
 		public void close() {
-			DbConnectionPool.this.add(this);
 			this.lastAccess = System.currentTimeMillis();
+			DbConnectionPool.this.release(this, this.resetSessionState());
 		}
 
 		public void reallyClose() throws SQLException {
+			if (this.statementCache != null) {
+				this.statementCache.close();
+			}
 			this.connection.close();
 		}
 
@@ -550,7 +1449,7 @@ public class DbConnectionPool implements Serializable {
 
 		@Override
 		public boolean isReadOnly() throws SQLException {
-			return this.connection.isReadOnly();
+			return this.readOnly;
 		}
 
 		@Override
@@ -668,12 +1567,26 @@ public class DbConnectionPool implements Serializable {
 
 		@Override
 		public void setSchema(final String schema) throws SQLException {
+			final String current = this.getSchema();
+			if (schema == null ? current == null : schema.equals(current)) {
+				return;
+			}
+			if (!this.schemaDirty) {
+				this.initialSchema = current;
+			}
 			this.connection.setSchema(schema);
+			this.schema = schema;
+			this.schemaDirty = schema == null ? this.initialSchema != null
+				: !schema.equals(this.initialSchema);
 		}
 
 		@Override
 		public String getSchema() throws SQLException {
-			return this.connection.getSchema();
+			if (!this.schemaKnown) {
+				this.schema = this.connection.getSchema();
+				this.schemaKnown = true;
+			}
+			return this.schema;
 		}
 
 		@Override
@@ -0,0 +1,62 @@
+package com.winepos.birt.util;
+
+/**
+ * What a {@link DbConnectionPool} exposes over JMX. Latencies are summarized in
+ * milliseconds.
+ */
+public interface DbConnectionPoolMXBean {
+	String getURL();
+
+	int getMaxSize();
+
+	int getOpenConnectionCount();
+
+	int getPooledConnectionCount();
+
+	int getTotalConnectionCount();
+
+	/**
+	 * @return from calling getConnection to having a connection, waiting included
+	 */
+	LatencyHistogram.Snapshot getCheckoutLatency();
+
+	/**
+	 * @return time spent waiting for a checkout permit while the pool was full
+	 */
+	LatencyHistogram.Snapshot getWaitTime();
+
+	LatencyHistogram.Snapshot getCreationTime();
+
+	/**
+	 * @return time from checkout to close, per borrower
+	 */
+	LatencyHistogram.Snapshot getHoldTime();
+
+	long getCheckouts();
+
+	long getAcquireTimeouts();
+
+	long getCreationFailures();
+
+	long getCreationRetries();
+
+	long getTimeoutEvictions();
+
+	long getInvalidEvictions();
+
+	long getAlreadyClosed();
+
+	long getLeaksDetected();
+
+	/**
+	 * @return connection attempts refused because the database was known to be
+	 *         down
+	 */
+	long getCircuitRejections();
+
+	boolean isCircuitOpen();
+
+	long getStatementCacheHits();
+
+	long getStatementCacheMisses();
+}
@@ -0,0 +1,168 @@
+package com.winepos.birt.util;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for one {@link DbConnectionPool}. Everything
+ * is recorded without locks so the checkout path stays cheap.
+ */
+public final class DbConnectionPoolMetrics implements DbConnectionPoolMXBean, Serializable {
+	private static final long serialVersionUID = 1L;
+	private final DbConnectionPool pool;
+	final LatencyHistogram checkoutLatency;
+	final LatencyHistogram waitTime;
+	final LatencyHistogram creationTime;
+	final LatencyHistogram holdTime;
+	final LongAdder acquireTimeouts;
+	final LongAdder creationFailures;
+	final LongAdder creationRetries;
+	final LongAdder timeoutEvictions;
+	final LongAdder invalidEvictions;
+	final LongAdder alreadyClosed;
+	final LongAdder leaksDetected;
+	final LongAdder circuitRejections;
+
+	DbConnectionPoolMetrics(final DbConnectionPool pool) {
+		this.pool = pool;
+		this.checkoutLatency = new LatencyHistogram();
+		this.waitTime = new LatencyHistogram();
+		this.creationTime = new LatencyHistogram();
+		this.holdTime = new LatencyHistogram();
+		this.acquireTimeouts = new LongAdder();
+		this.creationFailures = new LongAdder();
+		this.creationRetries = new LongAdder();
+		this.timeoutEvictions = new LongAdder();
+		this.invalidEvictions = new LongAdder();
+		this.alreadyClosed = new LongAdder();
+		this.leaksDetected = new LongAdder();
+		this.circuitRejections = new LongAdder();
+	}
+
+	@Override
+	public String getURL() {
+		return this.pool.getURL();
+	}
+
+	@Override
+	public int getMaxSize() {
+		return this.pool.getMaxSize();
+	}
+
+	@Override
+	public int getOpenConnectionCount() {
+		return this.pool.getOpenConnectionCount();
+	}
+
+	@Override
+	public int getPooledConnectionCount() {
+		return this.pool.getPooledConnectionCount();
+	}
+
+	@Override
+	public int getTotalConnectionCount() {
+		return this.pool.getTotalConnectionCount();
+	}
+
+	@Override
+	public LatencyHistogram.Snapshot getCheckoutLatency() {
+		return this.checkoutLatency.getSnapshot();
+	}
+
+	@Override
+	public LatencyHistogram.Snapshot getWaitTime() {
+		return this.waitTime.getSnapshot();
+	}
+
+	@Override
+	public LatencyHistogram.Snapshot getCreationTime() {
+		return this.creationTime.getSnapshot();
+	}
+
+	@Override
+	public LatencyHistogram.Snapshot getHoldTime() {
+		return this.holdTime.getSnapshot();
+	}
+
+	@Override
+	public long getCheckouts() {
+		return this.checkoutLatency.getCount();
+	}
+
+	@Override
+	public long getAcquireTimeouts() {
+		return this.acquireTimeouts.sum();
+	}
+
+	@Override
+	public long getCreationFailures() {
+		return this.creationFailures.sum();
+	}
+
+	@Override
+	public long getCreationRetries() {
+		return this.creationRetries.sum();
+	}
+
+	@Override
+	public long getTimeoutEvictions() {
+		return this.timeoutEvictions.sum();
+	}
+
+	@Override
+	public long getInvalidEvictions() {
+		return this.invalidEvictions.sum();
+	}
+
+	@Override
+	public long getAlreadyClosed() {
+		return this.alreadyClosed.sum();
+	}
+
+	@Override
+	public long getLeaksDetected() {
+		return this.leaksDetected.sum();
+	}
+
+	@Override
+	public long getCircuitRejections() {
+		return this.circuitRejections.sum();
+	}
+
+	@Override
+	public boolean isCircuitOpen() {
+		return this.pool.isCircuitOpen();
+	}
+
+	@Override
+	public long getStatementCacheHits() {
+		return this.pool.getStatementCacheHits();
+	}
+
+	@Override
+	public long getStatementCacheMisses() {
+		return this.pool.getStatementCacheMisses();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(this.pool);
+		sb.append("\ncheckout: ").append(this.checkoutLatency);
+		sb.append("\nwait: ").append(this.waitTime);
+		sb.append("\ncreation: ").append(this.creationTime);
+		sb.append("\nhold: ").append(this.holdTime);
+		sb.append("\nacquire timeouts: ").append(getAcquireTimeouts());
+		sb.append(", creation failures: ").append(getCreationFailures());
+		sb.append(", retries: ").append(getCreationRetries());
+		sb.append(", timeout evictions: ").append(getTimeoutEvictions());
+		sb.append(", invalid evictions: ").append(getInvalidEvictions());
+		sb.append(", already closed: ").append(getAlreadyClosed());
+		sb.append(", leaks: ").append(getLeaksDetected());
+		sb.append(", circuit rejections: ").append(getCircuitRejections());
+		if (isCircuitOpen()) {
+			sb.append(" (open)");
+		}
+		return sb.toString();
+	}
+}
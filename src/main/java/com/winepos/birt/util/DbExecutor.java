@@ -0,0 +1,167 @@
+package com.winepos.birt.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs database work for {@link DbInterface}'s asynchronous methods, at most
+ * {@code concurrency} tasks at a time so that callers do not queue up inside
+ * the connection pool. On a JVM with virtual threads each task gets its own
+ * virtual thread and a semaphore limits how many run at once; otherwise a
+ * fixed number of daemon threads take turns.
+ */
+public class DbExecutor implements Executor {
+	private final ExecutorService executor;
+	private final Semaphore permits;
+	private final int concurrency;
+	private final boolean virtualThreads;
+
+	public DbExecutor(final int concurrency, final boolean useVirtualThreads) {
+		this.concurrency = Math.max(concurrency, 1);
+		final ExecutorService virtualExecutor = useVirtualThreads ? newVirtualThreadExecutor()
+			: null;
+		if (virtualExecutor != null) {
+			this.executor = virtualExecutor;
+			this.permits = new Semaphore(this.concurrency);
+			this.virtualThreads = true;
+		}
+		else {
+			final ThreadPoolExecutor threadPool = new ThreadPoolExecutor(this.concurrency,
+					this.concurrency, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						private final AtomicInteger count = new AtomicInteger();
+
+						@Override
+						public Thread newThread(final Runnable runnable) {
+							final Thread thread = new Thread(runnable,
+									"DbExecutor-" + count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			threadPool.allowCoreThreadTimeOut(true);
+			this.executor = threadPool;
+			this.permits = null;
+			this.virtualThreads = false;
+		}
+	}
+
+	/**
+	 * Looked up by reflection so that the code still builds and runs on Java 8.
+	 *
+	 * @return null if the JVM has no virtual threads
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		}
+		catch (final Exception e) {
+			return null;
+		}
+	}
+
+	@Override
+	public void execute(final Runnable command) {
+		if (permits == null) {
+			executor.execute(command);
+			return;
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					runWithPermit(command);
+				}
+				catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+	}
+
+	private void runWithPermit(final Runnable command) throws InterruptedException {
+		if (permits == null) {
+			command.run();
+			return;
+		}
+		permits.acquire();
+		try {
+			command.run();
+		}
+		finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * @return a future completed with the result of {@code callable}, or with the
+	 *         exception it throws
+	 */
+	public <T> CompletableFuture<T> submit(final Callable<T> callable) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		final Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				if (future.isDone()) {
+					// Cancelled while waiting.
+					return;
+				}
+				try {
+					future.complete(callable.call());
+				}
+				catch (final Throwable t) {
+					future.completeExceptionally(t);
+				}
+			}
+		};
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						runWithPermit(task);
+					}
+					catch (final InterruptedException e) {
+						// Interrupted waiting for a permit, the task never ran.
+						Thread.currentThread().interrupt();
+						future.completeExceptionally(e);
+					}
+				}
+			});
+		}
+		catch (final RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	public void shutdown(final long timeout) throws InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public String toString() {
+		return "DbExecutor concurrency: " + concurrency
+			+ (virtualThreads ? ", virtual threads" : ", platform threads");
+	}
+}
@@ -5,67 +5,154 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
-import javax.naming.InitialContext;
 import javax.sql.DataSource;
 
 public class DbInterface {
-	final Configuration configuration;
+	private final Configuration configuration;
+	private final ConfigurationWatcher watcher;
 
 	public DbInterface(final Configuration configuration) {
 		this.configuration = configuration;
+		this.watcher = null;
+	}
+
+	/**
+	 * Follows the watcher, so that each call uses the configuration, and the
+	 * pool, that is current when it starts.
+	 */
+	public DbInterface(final ConfigurationWatcher watcher) {
+		this.configuration = null;
+		this.watcher = watcher;
+	}
+
+	public Configuration getConfiguration() {
+		return watcher == null ? configuration : watcher.get();
 	}
 
 	public Connection getConnection() throws SQLException {
+		final Configuration configuration = getConfiguration();
+		if (configuration.getJndiName() != null) {
+			final Connection connection = getJndiConnection();
+			if (connection != null) {
+				return connection;
+			}
+		}
+		return configuration.getPool().getConnection(8, false, true);
+	}
+
+	/**
+	 * Returns a connection for work that only reads. It comes from a replica when
+	 * any are configured and one can serve, otherwise from the primary as for
+	 * {@link #getConnection()}.
+	 */
+	public Connection getReadConnection() throws SQLException {
+		final ReplicaRouter replicaRouter = getConfiguration().getReplicaRouter();
+		if (replicaRouter != null) {
+			final Connection connection = replicaRouter.getConnection();
+			if (connection != null) {
+				return connection;
+			}
+		}
+		return getConnection();
+	}
+
+	/**
+	 * @return null if the connection should come from the pool instead
+	 */
+	private Connection getJndiConnection() throws SQLException {
+		final Configuration configuration = getConfiguration();
 		final Logger logger = configuration.getLogger();
-		final String jndiName = configuration.getJndiName();
-		if (jndiName != null) {
-			try {
-				final InitialContext initialContext = new InitialContext();
-				final DataSource datasource = (DataSource) initialContext.lookup(jndiName);
-				SQLException lastException = null;
-				int i = 0;
-				while (i < 4) {
-					try {
-						return datasource.getConnection();
-					}
-					catch (final SQLException e) {
-						logger.log("Failed to get connection, " + (3 - i) + " retrys left", e);
-						lastException = e;
-						try {
-							Thread.sleep(5000L);
-						}
-						catch (final InterruptedException ex) {
-						}
-						++i;
-					}
+		final int retries = configuration.getJndiRetries();
+		SQLException lastException = null;
+		for (int i = 0; i <= retries; i++) {
+			if (i > 0 && configuration.getJndiRetryDelay() > 0L) {
+				try {
+					Thread.sleep(configuration.getJndiRetryDelay());
 				}
-				if (lastException != null) {
-					throw lastException;
+				catch (final InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					break;
 				}
 			}
-			catch (final Exception e2) {
-				logger.log("Unable to connect to JNDI: " + e2);
+			final DataSource datasource;
+			try {
+				datasource = configuration.getDataSource();
+			}
+			catch (final Exception e) {
+				logger.log("Unable to connect to JNDI: " + e);
+				lastException = new SQLException("Unable to look up " + configuration.getJndiName(),
+						e);
+				continue;
+			}
+			try {
+				return datasource.getConnection();
+			}
+			catch (final SQLException e) {
+				logger.log("Failed to get connection, " + (retries - i) + " retrys left", e);
+				lastException = e;
+				configuration.invalidateDataSource(datasource);
 			}
 		}
-		return configuration.getPool().getConnection(8, false, true);
+		if (configuration.isJndiFallback() && configuration.getPool() != null) {
+			return null;
+		}
+		throw lastException;
 	}
 
 	public void update(final String resourceName, final Object[] parameters)
 			throws IOException, SQLException {
-		final File resourcesDir = new File(configuration.getResourcesDirName());
-		final File file = new File(resourcesDir, resourceName);
-		final String query = fileToString(file);
-		execute(query, parameters);
+		update(resourceName, null, parameters);
+	}
+
+	public void update(final String resourceName, final Map<String, ?> replacements,
+			final Object[] parameters) throws IOException, SQLException {
+		execute(resourceName, getQuery(resourceName, replacements), parameters);
+	}
+
+	/**
+	 * Returns the SQL resource with its {@code {key}} placeholders replaced. The
+	 * resource is read from disk only when it is new or has changed.
+	 */
+	public String getQuery(final String resourceName, final Map<String, ?> replacements)
+			throws IOException {
+		return getConfiguration().getSqlResourceCache().get(resourceName).fill(replacements);
 	}
 
 	public void execute(final String query, final Object[] parameters)
 			throws IOException, SQLException {
-		final Connection connection = getConnection();
+		execute(StatementStats.getName(query), query, parameters);
+	}
+
+	/**
+	 * @param name what the statement's timings are recorded under
+	 */
+	private void execute(final String name, final String query, final Object[] parameters)
+			throws SQLException {
+		final StatementStats.Timer timer = getConfiguration().getStatementStats().start(name,
+			parameters);
+		final Connection connection;
+		try {
+			connection = getConnection();
+		}
+		catch (final SQLException | RuntimeException e) {
+			timer.finish();
+			throw e;
+		}
+		timer.checkedOut();
 		try {
 			final PreparedStatement statement = connection.prepareStatement(query);
 			try {
+				timer.prepared();
 				if (parameters != null) {
 					for (int i = 0; i < parameters.length; i++) {
 						final Object value = parameters[i];
@@ -73,12 +160,407 @@ public class DbInterface {
 					}
 				}
 				statement.execute();
+				timer.succeeded();
 			}
 			finally {
 				statement.close();
 			}
 		}
 		finally {
+			timer.finish();
+			connection.close();
+		}
+	}
+
+	public CompletableFuture<Void> updateAsync(final String resourceName,
+			final Object[] parameters) {
+		return updateAsync(resourceName, null, parameters);
+	}
+
+	/**
+	 * Runs {@link #update(String, Map, Object[])} on the configuration's
+	 * {@link DbExecutor}.
+	 */
+	public CompletableFuture<Void> updateAsync(final String resourceName,
+			final Map<String, ?> replacements, final Object[] parameters) {
+		return getConfiguration().getAsyncExecutor().submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException, SQLException {
+				update(resourceName, replacements, parameters);
+				return null;
+			}
+		});
+	}
+
+	public CompletableFuture<Void> executeAsync(final String query, final Object[] parameters) {
+		return getConfiguration().getAsyncExecutor().submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException, SQLException {
+				execute(query, parameters);
+				return null;
+			}
+		});
+	}
+
+	public long query(final String resourceName, final Object[] parameters,
+			final RowHandler rowHandler) throws IOException, SQLException {
+		return query(resourceName, null, parameters, rowHandler);
+	}
+
+	public long query(final String resourceName, final Map<String, ?> replacements,
+			final Object[] parameters, final RowHandler rowHandler)
+			throws IOException, SQLException {
+		return executeQuery(resourceName, getQuery(resourceName, replacements), parameters,
+			rowHandler, getConfiguration().getFetchSize());
+	}
+
+	public CompletableFuture<Long> queryAsync(final String resourceName,
+			final Object[] parameters, final RowHandler rowHandler) {
+		return queryAsync(resourceName, null, parameters, rowHandler);
+	}
+
+	/**
+	 * Runs {@link #query(String, Map, Object[], RowHandler)} on the
+	 * configuration's {@link DbExecutor}; {@code rowHandler} is called on the
+	 * executor's thread.
+	 */
+	public CompletableFuture<Long> queryAsync(final String resourceName,
+			final Map<String, ?> replacements, final Object[] parameters,
+			final RowHandler rowHandler) {
+		return getConfiguration().getAsyncExecutor().submit(new Callable<Long>() {
+			@Override
+			public Long call() throws IOException, SQLException {
+				return Long.valueOf(query(resourceName, replacements, parameters, rowHandler));
+			}
+		});
+	}
+
+	public CompletableFuture<Long> executeQueryAsync(final String query,
+			final Object[] parameters, final RowHandler rowHandler) {
+		return getConfiguration().getAsyncExecutor().submit(new Callable<Long>() {
+			@Override
+			public Long call() throws SQLException {
+				return Long.valueOf(executeQuery(query, parameters, rowHandler));
+			}
+		});
+	}
+
+	public long executeQuery(final String query, final Object[] parameters,
+			final RowHandler rowHandler) throws SQLException {
+		return executeQuery(query, parameters, rowHandler, getConfiguration().getFetchSize());
+	}
+
+	/**
+	 * Streams the rows of a query to {@code rowHandler}. Auto commit is turned off
+	 * for the duration so that the driver can use a server side cursor and hold
+	 * only {@code fetchSize} rows in memory at a time.
+	 *
+	 * @return the number of rows passed to the handler
+	 */
+	public long executeQuery(final String query, final Object[] parameters,
+			final RowHandler rowHandler, final int fetchSize) throws SQLException {
+		return executeQuery(StatementStats.getName(query), query, parameters, rowHandler,
+			fetchSize);
+	}
+
+	/**
+	 * The execute time recorded for a query runs until the last row has been
+	 * handled, since the rows are fetched as they are read. Results served from
+	 * the {@link ResultCache} are not timed.
+	 */
+	private long executeQuery(final String name, final String query, final Object[] parameters,
+			final RowHandler rowHandler, final int fetchSize) throws SQLException {
+		final Configuration configuration = getConfiguration();
+		final ResultCache resultCache = configuration.getResultCache();
+		final long ttl = resultCache.getTtl(name);
+		final ResultCache.Key key = ttl > 0L ? new ResultCache.Key(name, query, parameters)
+			: null;
+		if (key != null) {
+			final ResultSet cached = resultCache.get(key);
+			if (cached != null) {
+				try {
+					return handleRows(cached, rowHandler, null);
+				}
+				finally {
+					cached.close();
+				}
+			}
+		}
+		final StatementStats.Timer timer = configuration.getStatementStats().start(name,
+			parameters);
+		final Connection connection;
+		try {
+			connection = getReadConnection();
+		}
+		catch (final SQLException | RuntimeException e) {
+			timer.finish();
+			throw e;
+		}
+		timer.checkedOut();
+		try {
+			final boolean autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+			boolean failed = false;
+			try {
+				final long rowCount;
+				ResultCache.Writer writer = null;
+				final PreparedStatement statement = connection.prepareStatement(query,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				try {
+					timer.prepared();
+					statement.setFetchSize(fetchSize);
+					if (parameters != null) {
+						for (int i = 0; i < parameters.length; i++) {
+							statement.setObject(i + 1, parameters[i]);
+						}
+					}
+					final ResultSet resultSet = statement.executeQuery();
+					try {
+						if (key != null) {
+							writer = resultCache.newWriter(resultSet);
+						}
+						rowCount = handleRows(resultSet, rowHandler, writer);
+					}
+					finally {
+						resultSet.close();
+					}
+				}
+				finally {
+					statement.close();
+				}
+				connection.commit();
+				timer.succeeded();
+				if (writer != null) {
+					resultCache.put(key, writer, ttl);
+				}
+				return rowCount;
+			}
+			catch (final SQLException | RuntimeException e) {
+				failed = true;
+				rollback(connection, autoCommit, e);
+				throw e;
+			}
+			finally {
+				if (!failed) {
+					connection.setAutoCommit(autoCommit);
+				}
+			}
+		}
+		finally {
+			timer.finish();
+			connection.close();
+		}
+	}
+
+	/**
+	 * Rolls back after {@code e} and restores auto commit, adding failures to do
+	 * so to {@code e} rather than letting them replace it.
+	 */
+	private static void rollback(final Connection connection, final boolean autoCommit,
+			final Exception e) {
+		try {
+			connection.rollback();
+		}
+		catch (final SQLException | RuntimeException e2) {
+			e.addSuppressed(e2);
+		}
+		try {
+			connection.setAutoCommit(autoCommit);
+		}
+		catch (final SQLException | RuntimeException e2) {
+			e.addSuppressed(e2);
+		}
+	}
+
+	/**
+	 * Passes rows to the handler, copying them to {@code writer} too unless it is
+	 * null. A result the handler stops reading early is not cached.
+	 */
+	private static long handleRows(final ResultSet resultSet, final RowHandler rowHandler,
+			final ResultCache.Writer writer) throws SQLException {
+		long count = 0L;
+		while (resultSet.next()) {
+			count++;
+			if (writer != null) {
+				writer.add(resultSet);
+			}
+			if (!rowHandler.handleRow(resultSet)) {
+				if (writer != null) {
+					writer.abandon();
+				}
+				break;
+			}
+		}
+		return count;
+	}
+
+	public TableMetadata getTableMetadata(final String tableName) throws SQLException {
+		final TableMetadataCache cache = getConfiguration().getTableMetadataCache();
+		TableMetadata metadata = cache.get(tableName);
+		if (metadata == null) {
+			metadata = probeTableMetadata(tableName);
+			cache.put(metadata);
+		}
+		return metadata;
+	}
+
+	/**
+	 * Finds the columns of a table without reading any of its rows. The statement
+	 * is only prepared, which lets drivers such as PostgreSQL's describe it
+	 * without running it; drivers that cannot do that get a query that matches no
+	 * rows instead.
+	 */
+	public TableMetadata probeTableMetadata(final String tableName) throws SQLException {
+		final Connection connection = getReadConnection();
+		try {
+			final PreparedStatement statement = connection.prepareStatement(
+				"select * from " + tableName);
+			try {
+				final ResultSetMetaData metaData = statement.getMetaData();
+				if (metaData != null) {
+					return new TableMetadata(tableName, getColumns(metaData));
+				}
+			}
+			finally {
+				statement.close();
+			}
+			final PreparedStatement emptyStatement = connection.prepareStatement(
+				"select * from " + tableName + " where 1 = 0");
+			try {
+				final ResultSet resultSet = emptyStatement.executeQuery();
+				try {
+					return new TableMetadata(tableName, getColumns(resultSet.getMetaData()));
+				}
+				finally {
+					resultSet.close();
+				}
+			}
+			finally {
+				emptyStatement.close();
+			}
+		}
+		finally {
+			connection.close();
+		}
+	}
+
+	private static List<ColumnInfo> getColumns(final ResultSetMetaData metaData)
+			throws SQLException {
+		final int colCount = metaData.getColumnCount();
+		final List<ColumnInfo> columns = new ArrayList<ColumnInfo>(colCount);
+		for (int i = 0; i < colCount; i++) {
+			columns.add(new ColumnInfo(metaData.getColumnName(i + 1),
+					metaData.getColumnType(i + 1), metaData.getColumnTypeName(i + 1)));
+		}
+		return columns;
+	}
+
+	public long updateBatch(final String resourceName, final Iterable<Object[]> parameterRows)
+			throws IOException, SQLException {
+		return updateBatch(resourceName, parameterRows.iterator());
+	}
+
+	public long updateBatch(final String resourceName, final Iterator<Object[]> parameterRows)
+			throws IOException, SQLException {
+		final String query = getQuery(resourceName, null);
+		final Configuration configuration = getConfiguration();
+		return executeBatch(resourceName, query, parameterRows, configuration.getBatchSize(),
+			configuration.getBatchCommitInterval());
+	}
+
+	public long executeBatch(final String query, final Iterable<Object[]> parameterRows)
+			throws SQLException {
+		final Configuration configuration = getConfiguration();
+		return executeBatch(query, parameterRows.iterator(), configuration.getBatchSize(),
+			configuration.getBatchCommitInterval());
+	}
+
+	/**
+	 * Runs the query once per parameter row on a single connection and prepared
+	 * statement, sending the rows to the database {@code batchSize} at a time.
+	 *
+	 * @param commitInterval number of rows between commits, 0 to commit once at the
+	 *            end; on failure only the rows since the last commit are rolled back
+	 * @return the number of rows executed
+	 */
+	public long executeBatch(final String query, final Iterator<Object[]> parameterRows,
+			final int batchSize, final int commitInterval) throws SQLException {
+		return executeBatch(StatementStats.getName(query), query, parameterRows, batchSize,
+			commitInterval);
+	}
+
+	private long executeBatch(final String name, final String query,
+			final Iterator<Object[]> parameterRows, final int batchSize,
+			final int commitInterval) throws SQLException {
+		final StatementStats.Timer timer = getConfiguration().getStatementStats().start(name, null);
+		final Connection connection;
+		try {
+			connection = getConnection();
+		}
+		catch (final SQLException | RuntimeException e) {
+			timer.finish();
+			throw e;
+		}
+		timer.checkedOut();
+		try {
+			final boolean autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+			boolean failed = false;
+			try {
+				final PreparedStatement statement = connection.prepareStatement(query);
+				try {
+					timer.prepared();
+					long rowCount = 0L;
+					int pending = 0;
+					int uncommitted = 0;
+					while (parameterRows.hasNext()) {
+						final Object[] parameters = parameterRows.next();
+						if (parameters != null) {
+							for (int i = 0; i < parameters.length; i++) {
+								statement.setObject(i + 1, parameters[i]);
+							}
+						}
+						statement.addBatch();
+						rowCount++;
+						pending++;
+						uncommitted++;
+						if (pending >= batchSize) {
+							statement.executeBatch();
+							pending = 0;
+						}
+						if (commitInterval > 0 && uncommitted >= commitInterval) {
+							if (pending > 0) {
+								statement.executeBatch();
+								pending = 0;
+							}
+							connection.commit();
+							uncommitted = 0;
+						}
+					}
+					if (pending > 0) {
+						statement.executeBatch();
+					}
+					connection.commit();
+					timer.succeeded();
+					return rowCount;
+				}
+				finally {
+					statement.close();
+				}
+			}
+			catch (final SQLException | RuntimeException e) {
+				failed = true;
+				rollback(connection, autoCommit, e);
+				throw e;
+			}
+			finally {
+				if (!failed) {
+					connection.setAutoCommit(autoCommit);
+				}
+			}
+		}
+		finally {
+			timer.finish();
 			connection.close();
 		}
 	}
@@ -0,0 +1,167 @@
+package com.winepos.birt.util;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds. Each power of two is split
+ * into four buckets, so percentiles are accurate to within 25%, which is
+ * plenty to tell a 2ms checkout from a 200ms one, and recording is a couple of
+ * atomic increments.
+ */
+public final class LatencyHistogram implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final int SUB_BUCKETS = 4;
+	private static final int BUCKETS = 64 * SUB_BUCKETS;
+	private final AtomicLongArray counts;
+	private final LongAdder count;
+	private final LongAdder total;
+	private final AtomicLong max;
+
+	public LatencyHistogram() {
+		this.counts = new AtomicLongArray(BUCKETS);
+		this.count = new LongAdder();
+		this.total = new LongAdder();
+		this.max = new AtomicLong();
+	}
+
+	public void record(final long nanos) {
+		final long value = Math.max(nanos, 0L);
+		this.counts.incrementAndGet(bucket(value));
+		this.count.increment();
+		this.total.add(value);
+		long current = this.max.get();
+		while (value > current && !this.max.compareAndSet(current, value)) {
+			current = this.max.get();
+		}
+	}
+
+	static int bucket(final long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int subBucket = (int) (value >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+		return (exponent - 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @return the largest value that falls in the bucket
+	 */
+	static long bucketUpperBound(final int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		final int exponent = bucket / SUB_BUCKETS + 1;
+		final int subBucket = bucket % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - 2)) - 1L;
+	}
+
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	public long getTotalNanos() {
+		return this.total.sum();
+	}
+
+	public long getMaxNanos() {
+		return this.max.get();
+	}
+
+	public double getMeanNanos() {
+		final long n = this.count.sum();
+		return n == 0L ? 0.0 : (double) this.total.sum() / n;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return an upper bound for the given percentile, never more than the
+	 *         largest value recorded
+	 */
+	public long getPercentileNanos(final double percentile) {
+		long n = 0L;
+		final long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = this.counts.get(i);
+			n += snapshot[i];
+		}
+		if (n == 0L) {
+			return 0L;
+		}
+		final long rank = Math.max((long) Math.ceil(n * percentile / 100.0), 1L);
+		long seen = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(bucketUpperBound(i), this.max.get());
+			}
+		}
+		return this.max.get();
+	}
+
+	public Snapshot getSnapshot() {
+		return new Snapshot(this);
+	}
+
+	@Override
+	public String toString() {
+		return getSnapshot().toString();
+	}
+
+	/**
+	 * The histogram summarized in milliseconds; exposed over JMX as composite
+	 * data.
+	 */
+	public static final class Snapshot {
+		private static final double NANOS_PER_MILLI = 1000000.0;
+		private final long count;
+		private final double mean;
+		private final double p50;
+		private final double p95;
+		private final double p99;
+		private final double max;
+
+		Snapshot(final LatencyHistogram histogram) {
+			this.count = histogram.getCount();
+			this.mean = histogram.getMeanNanos() / NANOS_PER_MILLI;
+			this.p50 = histogram.getPercentileNanos(50.0) / NANOS_PER_MILLI;
+			this.p95 = histogram.getPercentileNanos(95.0) / NANOS_PER_MILLI;
+			this.p99 = histogram.getPercentileNanos(99.0) / NANOS_PER_MILLI;
+			this.max = histogram.getMaxNanos() / NANOS_PER_MILLI;
+		}
+
+		public long getCount() {
+			return this.count;
+		}
+
+		public double getMean() {
+			return this.mean;
+		}
+
+		public double getP50() {
+			return this.p50;
+		}
+
+		public double getP95() {
+			return this.p95;
+		}
+
+		public double getP99() {
+			return this.p99;
+		}
+
+		public double getMax() {
+			return this.max;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("count: %d, mean: %.3fms, p50: %.3fms, p95: %.3fms,"
+				+ " p99: %.3fms, max: %.3fms", this.count, this.mean, this.p50, this.p95,
+				this.p99, this.max);
+		}
+	}
+}
@@ -10,14 +10,34 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 
 public class Logger {
+	private static final ThreadLocal<DateFormat> DATE_FORMAT;
 	public final String logFilename;
 	public final boolean debugLogging;
 	public final String suffix;
+	public final AsyncLogWriter writer;
+	static {
+		DATE_FORMAT = new ThreadLocal<DateFormat>() {
+			@Override
+			protected DateFormat initialValue() {
+				return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS ");
+			}
+		};
+	}
 
 	public Logger(final String logFilename, final boolean debugLogging, final String suffix) {
+		this(logFilename, debugLogging, suffix, null);
+	}
+
+	/**
+	 * @param writer if not null, messages are handed to this writer's queue
+	 *            instead of being written on the caller's thread
+	 */
+	public Logger(final String logFilename, final boolean debugLogging, final String suffix,
+			final AsyncLogWriter writer) {
 		this.logFilename = logFilename;
 		this.debugLogging = debugLogging;
 		this.suffix = suffix;
+		this.writer = writer;
 	}
 
 	public void debugLog(final Object message, final Object details) {
@@ -94,7 +114,12 @@ public class Logger {
 
 	public void log(final Object message, final Object details, final Throwable t,
 			final boolean includeSuffix) {
-		final DateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS ");
+		if (writer != null) {
+			writer.append(System.currentTimeMillis(), message, details, t,
+				includeSuffix ? suffix : null);
+			return;
+		}
+		final DateFormat df = DATE_FORMAT.get();
 		try {
 			final String filename = this.logFilename;
 			if (filename == null) {
@@ -0,0 +1,725 @@
+package com.winepos.birt.util;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * Prepared statement handed out by a {@link DbConnectionPool.PooledConnection}
+ * with a statement cache. Closing it resets the statement and returns it to the
+ * cache instead of closing it, unless the borrower changed a setting that
+ * cannot be reset.
+ */
+public class PooledPreparedStatement implements PreparedStatement {
+	private final Connection connection;
+	private final PreparedStatement statement;
+	private final StatementCache cache;
+	private final StatementCache.Key key;
+	private boolean closed;
+	private boolean reusable;
+	private Integer originalFetchSize;
+	private Integer originalFetchDirection;
+	private Integer originalMaxRows;
+	private Long originalLargeMaxRows;
+	private Integer originalMaxFieldSize;
+	private Integer originalQueryTimeout;
+
+	public PooledPreparedStatement(final Connection connection,
+			final PreparedStatement statement, final StatementCache cache,
+			final StatementCache.Key key) {
+		this.connection = connection;
+		this.statement = statement;
+		this.cache = cache;
+		this.key = key;
+		this.closed = false;
+		this.reusable = true;
+	}
+
+	private PreparedStatement statement() throws SQLException {
+		if (this.closed) {
+			throw new SQLException("Statement is closed");
+		}
+		return this.statement;
+	}
+
+	private ResultSet wrap(final ResultSet resultSet) {
+		return resultSet == null ? null : new PooledResultSet(this, resultSet);
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		if (this.reusable && this.resetForReuse() && this.cache.offer(this.key, this.statement)) {
+			return;
+		}
+		this.statement.close();
+	}
+
+	private boolean resetForReuse() {
+		try {
+			if (this.statement.isClosed()) {
+				return false;
+			}
+			final ResultSet resultSet = this.statement.getResultSet();
+			if (resultSet != null) {
+				resultSet.close();
+			}
+			this.statement.clearParameters();
+			this.statement.clearBatch();
+			this.statement.clearWarnings();
+			// Restored through the setter that was used, since drivers such as
+			// pgjdbc do not implement the large variants, and before the fetch
+			// size, which some drivers check against it.
+			if (this.originalMaxRows != null) {
+				this.statement.setMaxRows(this.originalMaxRows.intValue());
+			}
+			else if (this.originalLargeMaxRows != null) {
+				this.statement.setLargeMaxRows(this.originalLargeMaxRows.longValue());
+			}
+			if (this.originalFetchSize != null) {
+				this.statement.setFetchSize(this.originalFetchSize.intValue());
+			}
+			if (this.originalFetchDirection != null) {
+				this.statement.setFetchDirection(this.originalFetchDirection.intValue());
+			}
+			if (this.originalMaxFieldSize != null) {
+				this.statement.setMaxFieldSize(this.originalMaxFieldSize.intValue());
+			}
+			if (this.originalQueryTimeout != null) {
+				this.statement.setQueryTimeout(this.originalQueryTimeout.intValue());
+			}
+			return true;
+		}
+		catch (final SQLException e) {
+			return false;
+		}
+	}
+
+	public void reallyClose() throws SQLException {
+		this.closed = true;
+		this.statement.close();
+	}
+
+	@Override
+	public boolean isClosed() throws SQLException {
+		return this.closed || this.statement.isClosed();
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		this.statement();
+		return this.connection;
+	}
+
+	@Override
+	public void setFetchSize(final int rows) throws SQLException {
+		final PreparedStatement statement = this.statement();
+		if (this.originalFetchSize == null) {
+			this.originalFetchSize = Integer.valueOf(statement.getFetchSize());
+		}
+		statement.setFetchSize(rows);
+	}
+
+	@Override
+	public void setFetchDirection(final int direction) throws SQLException {
+		final PreparedStatement statement = this.statement();
+		if (this.originalFetchDirection == null) {
+			this.originalFetchDirection = Integer.valueOf(statement.getFetchDirection());
+		}
+		statement.setFetchDirection(direction);
+	}
+
+	@Override
+	public void setMaxRows(final int max) throws SQLException {
+		final PreparedStatement statement = this.statement();
+		if (this.originalMaxRows == null && this.originalLargeMaxRows == null) {
+			this.originalMaxRows = Integer.valueOf(statement.getMaxRows());
+		}
+		statement.setMaxRows(max);
+	}
+
+	@Override
+	public void setLargeMaxRows(final long max) throws SQLException {
+		final PreparedStatement statement = this.statement();
+		if (this.originalMaxRows == null && this.originalLargeMaxRows == null) {
+			this.originalLargeMaxRows = Long.valueOf(statement.getLargeMaxRows());
+		}
+		statement.setLargeMaxRows(max);
+	}
+
+	@Override
+	public void setMaxFieldSize(final int max) throws SQLException {
+		final PreparedStatement statement = this.statement();
+		if (this.originalMaxFieldSize == null) {
+			this.originalMaxFieldSize = Integer.valueOf(statement.getMaxFieldSize());
+		}
+		statement.setMaxFieldSize(max);
+	}
+
+	@Override
+	public void setQueryTimeout(final int seconds) throws SQLException {
+		final PreparedStatement statement = this.statement();
+		if (this.originalQueryTimeout == null) {
+			this.originalQueryTimeout = Integer.valueOf(statement.getQueryTimeout());
+		}
+		statement.setQueryTimeout(seconds);
+	}
+
+	@Override
+	public void setEscapeProcessing(final boolean enable) throws SQLException {
+		this.reusable = false;
+		this.statement().setEscapeProcessing(enable);
+	}
+
+	@Override
+	public void setCursorName(final String name) throws SQLException {
+		this.reusable = false;
+		this.statement().setCursorName(name);
+	}
+
+	@Override
+	public void setPoolable(final boolean poolable) throws SQLException {
+		this.reusable = poolable && this.reusable;
+		this.statement().setPoolable(poolable);
+	}
+
+	@Override
+	public void closeOnCompletion() throws SQLException {
+		this.reusable = false;
+		this.statement().closeOnCompletion();
+	}
+
+	@Override
+	public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || this.statement.isWrapperFor(iface);
+	}
+
+	@Override
+	public <T> T unwrap(final Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return iface.cast(this);
+		}
+		return this.statement.unwrap(iface);
+	}
+
+	@Override
+	public void addBatch() throws SQLException {
+		this.statement().addBatch();
+	}
+
+	@Override
+	public void clearParameters() throws SQLException {
+		this.statement().clearParameters();
+	}
+
+	@Override
+	public boolean execute() throws SQLException {
+		return this.statement().execute();
+	}
+
+	@Override
+	public long executeLargeUpdate() throws SQLException {
+		return this.statement().executeLargeUpdate();
+	}
+
+	@Override
+	public ResultSet executeQuery() throws SQLException {
+		return this.wrap(this.statement().executeQuery());
+	}
+
+	@Override
+	public int executeUpdate() throws SQLException {
+		return this.statement().executeUpdate();
+	}
+
+	@Override
+	public ResultSetMetaData getMetaData() throws SQLException {
+		return this.statement().getMetaData();
+	}
+
+	@Override
+	public ParameterMetaData getParameterMetaData() throws SQLException {
+		return this.statement().getParameterMetaData();
+	}
+
+	@Override
+	public void setArray(final int parameterIndex, final Array x) throws SQLException {
+		this.statement().setArray(parameterIndex, x);
+	}
+
+	@Override
+	public void setAsciiStream(final int parameterIndex, final InputStream x, final int length)
+			throws SQLException {
+		this.statement().setAsciiStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setAsciiStream(final int parameterIndex, final InputStream x, final long length)
+			throws SQLException {
+		this.statement().setAsciiStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setAsciiStream(final int parameterIndex, final InputStream x) throws SQLException {
+		this.statement().setAsciiStream(parameterIndex, x);
+	}
+
+	@Override
+	public void setBigDecimal(final int parameterIndex, final BigDecimal x) throws SQLException {
+		this.statement().setBigDecimal(parameterIndex, x);
+	}
+
+	@Override
+	public void setBinaryStream(final int parameterIndex, final InputStream x, final int length)
+			throws SQLException {
+		this.statement().setBinaryStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setBinaryStream(final int parameterIndex, final InputStream x, final long length)
+			throws SQLException {
+		this.statement().setBinaryStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setBinaryStream(final int parameterIndex, final InputStream x) throws SQLException {
+		this.statement().setBinaryStream(parameterIndex, x);
+	}
+
+	@Override
+	public void setBlob(final int parameterIndex, final InputStream x, final long length)
+			throws SQLException {
+		this.statement().setBlob(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setBlob(final int parameterIndex, final InputStream x) throws SQLException {
+		this.statement().setBlob(parameterIndex, x);
+	}
+
+	@Override
+	public void setBlob(final int parameterIndex, final Blob x) throws SQLException {
+		this.statement().setBlob(parameterIndex, x);
+	}
+
+	@Override
+	public void setBoolean(final int parameterIndex, final boolean x) throws SQLException {
+		this.statement().setBoolean(parameterIndex, x);
+	}
+
+	@Override
+	public void setByte(final int parameterIndex, final byte x) throws SQLException {
+		this.statement().setByte(parameterIndex, x);
+	}
+
+	@Override
+	public void setBytes(final int parameterIndex, final byte[] x) throws SQLException {
+		this.statement().setBytes(parameterIndex, x);
+	}
+
+	@Override
+	public void setCharacterStream(final int parameterIndex, final Reader x, final int length)
+			throws SQLException {
+		this.statement().setCharacterStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setCharacterStream(final int parameterIndex, final Reader x, final long length)
+			throws SQLException {
+		this.statement().setCharacterStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setCharacterStream(final int parameterIndex, final Reader x) throws SQLException {
+		this.statement().setCharacterStream(parameterIndex, x);
+	}
+
+	@Override
+	public void setClob(final int parameterIndex, final Reader x, final long length)
+			throws SQLException {
+		this.statement().setClob(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setClob(final int parameterIndex, final Reader x) throws SQLException {
+		this.statement().setClob(parameterIndex, x);
+	}
+
+	@Override
+	public void setClob(final int parameterIndex, final Clob x) throws SQLException {
+		this.statement().setClob(parameterIndex, x);
+	}
+
+	@Override
+	public void setDate(final int parameterIndex, final Date x, final Calendar cal)
+			throws SQLException {
+		this.statement().setDate(parameterIndex, x, cal);
+	}
+
+	@Override
+	public void setDate(final int parameterIndex, final Date x) throws SQLException {
+		this.statement().setDate(parameterIndex, x);
+	}
+
+	@Override
+	public void setDouble(final int parameterIndex, final double x) throws SQLException {
+		this.statement().setDouble(parameterIndex, x);
+	}
+
+	@Override
+	public void setFloat(final int parameterIndex, final float x) throws SQLException {
+		this.statement().setFloat(parameterIndex, x);
+	}
+
+	@Override
+	public void setInt(final int parameterIndex, final int x) throws SQLException {
+		this.statement().setInt(parameterIndex, x);
+	}
+
+	@Override
+	public void setLong(final int parameterIndex, final long x) throws SQLException {
+		this.statement().setLong(parameterIndex, x);
+	}
+
+	@Override
+	public void setNCharacterStream(final int parameterIndex, final Reader x, final long length)
+			throws SQLException {
+		this.statement().setNCharacterStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setNCharacterStream(final int parameterIndex, final Reader x) throws SQLException {
+		this.statement().setNCharacterStream(parameterIndex, x);
+	}
+
+	@Override
+	public void setNClob(final int parameterIndex, final Reader x, final long length)
+			throws SQLException {
+		this.statement().setNClob(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setNClob(final int parameterIndex, final Reader x) throws SQLException {
+		this.statement().setNClob(parameterIndex, x);
+	}
+
+	@Override
+	public void setNClob(final int parameterIndex, final NClob x) throws SQLException {
+		this.statement().setNClob(parameterIndex, x);
+	}
+
+	@Override
+	public void setNString(final int parameterIndex, final String x) throws SQLException {
+		this.statement().setNString(parameterIndex, x);
+	}
+
+	@Override
+	public void setNull(final int parameterIndex, final int sqlType, final String typeName)
+			throws SQLException {
+		this.statement().setNull(parameterIndex, sqlType, typeName);
+	}
+
+	@Override
+	public void setNull(final int parameterIndex, final int sqlType) throws SQLException {
+		this.statement().setNull(parameterIndex, sqlType);
+	}
+
+	@Override
+	public void setObject(final int parameterIndex, final Object x, final int targetSqlType,
+			final int scaleOrLength) throws SQLException {
+		this.statement().setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+	}
+
+	@Override
+	public void setObject(final int parameterIndex, final Object x, final int targetSqlType)
+			throws SQLException {
+		this.statement().setObject(parameterIndex, x, targetSqlType);
+	}
+
+	@Override
+	public void setObject(final int parameterIndex, final Object x,
+			final SQLType targetSqlType, final int scaleOrLength) throws SQLException {
+		this.statement().setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+	}
+
+	@Override
+	public void setObject(final int parameterIndex, final Object x, final SQLType targetSqlType)
+			throws SQLException {
+		this.statement().setObject(parameterIndex, x, targetSqlType);
+	}
+
+	@Override
+	public void setObject(final int parameterIndex, final Object x) throws SQLException {
+		this.statement().setObject(parameterIndex, x);
+	}
+
+	@Override
+	public void setRef(final int parameterIndex, final Ref x) throws SQLException {
+		this.statement().setRef(parameterIndex, x);
+	}
+
+	@Override
+	public void setRowId(final int parameterIndex, final RowId x) throws SQLException {
+		this.statement().setRowId(parameterIndex, x);
+	}
+
+	@Override
+	public void setSQLXML(final int parameterIndex, final SQLXML x) throws SQLException {
+		this.statement().setSQLXML(parameterIndex, x);
+	}
+
+	@Override
+	public void setShort(final int parameterIndex, final short x) throws SQLException {
+		this.statement().setShort(parameterIndex, x);
+	}
+
+	@Override
+	public void setString(final int parameterIndex, final String x) throws SQLException {
+		this.statement().setString(parameterIndex, x);
+	}
+
+	@Override
+	public void setTime(final int parameterIndex, final Time x, final Calendar cal)
+			throws SQLException {
+		this.statement().setTime(parameterIndex, x, cal);
+	}
+
+	@Override
+	public void setTime(final int parameterIndex, final Time x) throws SQLException {
+		this.statement().setTime(parameterIndex, x);
+	}
+
+	@Override
+	public void setTimestamp(final int parameterIndex, final Timestamp x, final Calendar cal)
+			throws SQLException {
+		this.statement().setTimestamp(parameterIndex, x, cal);
+	}
+
+	@Override
+	public void setTimestamp(final int parameterIndex, final Timestamp x) throws SQLException {
+		this.statement().setTimestamp(parameterIndex, x);
+	}
+
+	@Override
+	public void setURL(final int parameterIndex, final URL x) throws SQLException {
+		this.statement().setURL(parameterIndex, x);
+	}
+
+	@Override
+	@Deprecated
+	public void setUnicodeStream(final int parameterIndex, final InputStream x, final int length)
+			throws SQLException {
+		this.statement().setUnicodeStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void addBatch(final String sql) throws SQLException {
+		this.statement().addBatch(sql);
+	}
+
+	@Override
+	public void cancel() throws SQLException {
+		this.statement().cancel();
+	}
+
+	@Override
+	public void clearBatch() throws SQLException {
+		this.statement().clearBatch();
+	}
+
+	@Override
+	public void clearWarnings() throws SQLException {
+		this.statement().clearWarnings();
+	}
+
+	@Override
+	public boolean execute(final String sql, final int[] columnIndexes) throws SQLException {
+		return this.statement().execute(sql, columnIndexes);
+	}
+
+	@Override
+	public boolean execute(final String sql, final String[] columnNames) throws SQLException {
+		return this.statement().execute(sql, columnNames);
+	}
+
+	@Override
+	public boolean execute(final String sql, final int autoGeneratedKeys) throws SQLException {
+		return this.statement().execute(sql, autoGeneratedKeys);
+	}
+
+	@Override
+	public boolean execute(final String sql) throws SQLException {
+		return this.statement().execute(sql);
+	}
+
+	@Override
+	public int[] executeBatch() throws SQLException {
+		return this.statement().executeBatch();
+	}
+
+	@Override
+	public long[] executeLargeBatch() throws SQLException {
+		return this.statement().executeLargeBatch();
+	}
+
+	@Override
+	public long executeLargeUpdate(final String sql, final int[] columnIndexes)
+			throws SQLException {
+		return this.statement().executeLargeUpdate(sql, columnIndexes);
+	}
+
+	@Override
+	public long executeLargeUpdate(final String sql, final String[] columnNames)
+			throws SQLException {
+		return this.statement().executeLargeUpdate(sql, columnNames);
+	}
+
+	@Override
+	public long executeLargeUpdate(final String sql, final int autoGeneratedKeys)
+			throws SQLException {
+		return this.statement().executeLargeUpdate(sql, autoGeneratedKeys);
+	}
+
+	@Override
+	public long executeLargeUpdate(final String sql) throws SQLException {
+		return this.statement().executeLargeUpdate(sql);
+	}
+
+	@Override
+	public ResultSet executeQuery(final String sql) throws SQLException {
+		return this.wrap(this.statement().executeQuery(sql));
+	}
+
+	@Override
+	public int executeUpdate(final String sql, final int[] columnIndexes) throws SQLException {
+		return this.statement().executeUpdate(sql, columnIndexes);
+	}
+
+	@Override
+	public int executeUpdate(final String sql, final String[] columnNames) throws SQLException {
+		return this.statement().executeUpdate(sql, columnNames);
+	}
+
+	@Override
+	public int executeUpdate(final String sql, final int autoGeneratedKeys) throws SQLException {
+		return this.statement().executeUpdate(sql, autoGeneratedKeys);
+	}
+
+	@Override
+	public int executeUpdate(final String sql) throws SQLException {
+		return this.statement().executeUpdate(sql);
+	}
+
+	@Override
+	public int getFetchDirection() throws SQLException {
+		return this.statement().getFetchDirection();
+	}
+
+	@Override
+	public int getFetchSize() throws SQLException {
+		return this.statement().getFetchSize();
+	}
+
+	@Override
+	public ResultSet getGeneratedKeys() throws SQLException {
+		return this.wrap(this.statement().getGeneratedKeys());
+	}
+
+	@Override
+	public long getLargeMaxRows() throws SQLException {
+		return this.statement().getLargeMaxRows();
+	}
+
+	@Override
+	public long getLargeUpdateCount() throws SQLException {
+		return this.statement().getLargeUpdateCount();
+	}
+
+	@Override
+	public int getMaxFieldSize() throws SQLException {
+		return this.statement().getMaxFieldSize();
+	}
+
+	@Override
+	public int getMaxRows() throws SQLException {
+		return this.statement().getMaxRows();
+	}
+
+	@Override
+	public boolean getMoreResults() throws SQLException {
+		return this.statement().getMoreResults();
+	}
+
+	@Override
+	public boolean getMoreResults(final int current) throws SQLException {
+		return this.statement().getMoreResults(current);
+	}
+
+	@Override
+	public int getQueryTimeout() throws SQLException {
+		return this.statement().getQueryTimeout();
+	}
+
+	@Override
+	public ResultSet getResultSet() throws SQLException {
+		return this.wrap(this.statement().getResultSet());
+	}
+
+	@Override
+	public int getResultSetConcurrency() throws SQLException {
+		return this.statement().getResultSetConcurrency();
+	}
+
+	@Override
+	public int getResultSetHoldability() throws SQLException {
+		return this.statement().getResultSetHoldability();
+	}
+
+	@Override
+	public int getResultSetType() throws SQLException {
+		return this.statement().getResultSetType();
+	}
+
+	@Override
+	public int getUpdateCount() throws SQLException {
+		return this.statement().getUpdateCount();
+	}
+
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		return this.statement().getWarnings();
+	}
+
+	@Override
+	public boolean isCloseOnCompletion() throws SQLException {
+		return this.statement().isCloseOnCompletion();
+	}
+
+	@Override
+	public boolean isPoolable() throws SQLException {
+		return this.statement().isPoolable();
+	}
+}
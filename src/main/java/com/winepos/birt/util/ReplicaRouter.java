@@ -0,0 +1,223 @@
+package com.winepos.birt.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads read-only work over a set of replica pools. A replica that cannot
+ * hand out a connection is skipped for {@code retryInterval} milliseconds;
+ * when no replica can serve, {@link #getConnection()} returns null and the
+ * caller uses the primary instead.
+ */
+public class ReplicaRouter {
+	public enum Policy {
+		ROUND_ROBIN, LEAST_LOAD
+	}
+
+	private final Configuration configuration;
+	private final List<Replica> replicas;
+	private final Policy policy;
+	private final long retryInterval;
+	private final AtomicInteger next;
+
+	public ReplicaRouter(final Configuration configuration, final String driver,
+			final List<String> urls, final String username, final String password,
+			final Policy policy, final long retryInterval) {
+		this.configuration = configuration;
+		final List<Replica> replicas = new ArrayList<Replica>(urls.size());
+		for (final String url : urls) {
+			replicas.add(new Replica(driver, url, username, password));
+		}
+		this.replicas = Collections.unmodifiableList(replicas);
+		this.policy = policy;
+		this.retryInterval = retryInterval;
+		this.next = new AtomicInteger();
+	}
+
+	/**
+	 * @return a read-only connection to a replica, or null if none is available
+	 */
+	public Connection getConnection() {
+		final int count = replicas.size();
+		if (count == 0) {
+			return null;
+		}
+		final long now = System.currentTimeMillis();
+		final int first = policy == Policy.LEAST_LOAD ? getLeastLoaded(now)
+			: (next.getAndIncrement() & Integer.MAX_VALUE) % count;
+		for (int i = 0; i < count; i++) {
+			final Replica replica = replicas.get((first + i) % count);
+			if (!replica.isAvailable(now)) {
+				continue;
+			}
+			try {
+				return replica.getConnection();
+			}
+			catch (final CircuitOpenException e) {
+				replica.downUntil = System.currentTimeMillis() + retryInterval;
+				configuration.getLogger().log("Replica " + replica.url + " is down: "
+					+ e.getMessage());
+			}
+			catch (final SQLTransientConnectionException e) {
+				// Busy rather than down; try the next one.
+				configuration.getLogger().log("Replica " + replica.url + " is busy: "
+					+ e.getMessage());
+			}
+			catch (final SQLException e) {
+				replica.downUntil = System.currentTimeMillis() + retryInterval;
+				configuration.getLogger().log("Replica " + replica.url
+					+ " is down, retrying in " + retryInterval + "ms", e);
+			}
+		}
+		return null;
+	}
+
+	private int getLeastLoaded(final long now) {
+		int best = 0;
+		int bestLoad = Integer.MAX_VALUE;
+		for (int i = 0; i < replicas.size(); i++) {
+			final Replica replica = replicas.get(i);
+			if (!replica.isAvailable(now)) {
+				continue;
+			}
+			final DbConnectionPool pool = replica.pool;
+			final int load = pool == null ? 0 : pool.getOpenConnectionCount();
+			if (load < bestLoad) {
+				best = i;
+				bestLoad = load;
+			}
+		}
+		return best;
+	}
+
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	public int getReplicaCount() {
+		return replicas.size();
+	}
+
+	/**
+	 * @return the replicas' pools, or null for a replica that has not been
+	 *         reached yet
+	 */
+	public List<DbConnectionPool> getPools() {
+		final List<DbConnectionPool> pools = new ArrayList<DbConnectionPool>(replicas.size());
+		for (final Replica replica : replicas) {
+			pools.add(replica.pool);
+		}
+		return pools;
+	}
+
+	public void shutdown() throws SQLException {
+		for (final Replica replica : replicas) {
+			final DbConnectionPool pool = replica.pool;
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Drains each replica pool that has been created, as
+	 * {@link DbConnectionPool#drain(long)} does.
+	 *
+	 * @return false if any pool still had connections checked out
+	 */
+	public boolean drain(final long timeout) throws SQLException {
+		final long deadline = System.currentTimeMillis() + timeout;
+		boolean drained = true;
+		for (final Replica replica : replicas) {
+			final DbConnectionPool pool = replica.pool;
+			if (pool != null) {
+				drained &= pool.drain(Math.max(deadline - System.currentTimeMillis(), 0L));
+			}
+		}
+		return drained;
+	}
+
+	void registerMBeans() {
+		for (final Replica replica : replicas) {
+			final DbConnectionPool pool = replica.pool;
+			if (pool != null) {
+				configuration.registerMBean(pool, replica.url);
+			}
+		}
+	}
+
+	void unregisterMBeans() {
+		for (final Replica replica : replicas) {
+			final DbConnectionPool pool = replica.pool;
+			if (pool != null) {
+				pool.unregisterMBean();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		final long now = System.currentTimeMillis();
+		final StringBuilder sb = new StringBuilder();
+		sb.append(policy);
+		for (final Replica replica : replicas) {
+			sb.append("\n  ");
+			sb.append(replica.pool == null ? replica.url : replica.pool.toString());
+			if (!replica.isAvailable(now)) {
+				sb.append(" (down)");
+			}
+		}
+		return sb.toString();
+	}
+
+	private final class Replica {
+		private final String driver;
+		private final String url;
+		private final String username;
+		private final String password;
+		private volatile DbConnectionPool pool;
+		private volatile long downUntil;
+
+		Replica(final String driver, final String url, final String username,
+				final String password) {
+			this.driver = driver;
+			this.url = url;
+			this.username = username;
+			this.password = password;
+		}
+
+		boolean isAvailable(final long now) {
+			return now >= downUntil;
+		}
+
+		/**
+		 * The pool is created on first use so that a replica that is down at
+		 * startup does not stop the application from starting.
+		 */
+		Connection getConnection() throws SQLException {
+			DbConnectionPool pool = this.pool;
+			if (pool == null) {
+				synchronized (this) {
+					pool = this.pool;
+					if (pool == null) {
+						try {
+							pool = configuration.createPool(driver, url, username, password,
+								url);
+						}
+						catch (final ClassNotFoundException e) {
+							throw new SQLException("Unable to load " + driver, e);
+						}
+						this.pool = pool;
+					}
+				}
+			}
+			// Hot standbys reject serializable transactions.
+			return pool.getConnection(Connection.TRANSACTION_READ_COMMITTED, true, true);
+		}
+	}
+}
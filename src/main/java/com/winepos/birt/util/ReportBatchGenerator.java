@@ -0,0 +1,271 @@
+package com.winepos.birt.util;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates one design per table on a bounded pool of worker threads. A table
+ * that fails is logged and skipped; it does not stop the others.
+ */
+public class ReportBatchGenerator {
+	private final Configuration configuration;
+	private final DbInterface db;
+	private final ReportDesignService designService;
+	private final int threads;
+	private boolean force;
+
+	public ReportBatchGenerator(final Configuration configuration,
+			final ReportDesignService designService) {
+		this(configuration, designService, defaultThreads(configuration));
+	}
+
+	public ReportBatchGenerator(final Configuration configuration,
+			final ReportDesignService designService, final int threads) {
+		this.configuration = configuration;
+		this.db = new DbInterface(configuration);
+		this.designService = designService;
+		this.threads = Math.max(threads, 1);
+		this.force = configuration.getBooleanProperty("report.batch.force", false);
+	}
+
+	/**
+	 * One thread per core, but no more than the connection pool can serve at once.
+	 */
+	static int defaultThreads(final Configuration configuration) {
+		final int configured = configuration.getIntProperty("report.batch.threads", 0);
+		if (configured > 0) {
+			return configured;
+		}
+		int threads = Runtime.getRuntime().availableProcessors();
+		final DbConnectionPool pool = configuration.getPool();
+		if (pool != null && pool.getMaxSize() > 0) {
+			threads = Math.min(threads, pool.getMaxSize());
+		}
+		return threads;
+	}
+
+	public boolean isForce() {
+		return force;
+	}
+
+	/**
+	 * @param force whether to rebuild designs whose table has not changed
+	 */
+	public void setForce(final boolean force) {
+		this.force = force;
+	}
+
+	/**
+	 * Lists the tables and views matching the patterns, qualified with their
+	 * schema name when the database reports one. The names are quoted, when the
+	 * database supports it, so that they can be used in SQL as they are.
+	 */
+	public List<String> findTables(final String schemaPattern, final String tablePattern)
+			throws SQLException {
+		final List<String> tableNames = new ArrayList<String>();
+		final Connection connection = db.getReadConnection();
+		try {
+			final DatabaseMetaData metaData = connection.getMetaData();
+			final String quote = metaData.getIdentifierQuoteString().trim();
+			final ResultSet resultSet = metaData.getTables(null, schemaPattern,
+				tablePattern == null ? "%" : tablePattern, new String[] { "TABLE", "VIEW" });
+			try {
+				while (resultSet.next()) {
+					final String schema = resultSet.getString("TABLE_SCHEM");
+					final String table = resultSet.getString("TABLE_NAME");
+					tableNames.add(schema == null ? quote(table, quote)
+						: quote(schema, quote) + "." + quote(table, quote));
+				}
+			}
+			finally {
+				resultSet.close();
+			}
+		}
+		finally {
+			connection.close();
+		}
+		return tableNames;
+	}
+
+	/**
+	 * @param quote the identifier quote string, empty if the database has none
+	 */
+	static String quote(final String identifier, final String quote) {
+		if (quote.isEmpty()) {
+			return identifier;
+		}
+		return quote + identifier.replace(quote, quote + quote) + quote;
+	}
+
+	public Summary generate(final List<String> tableNames, final File outputDir)
+			throws InterruptedException {
+		final Logger logger = configuration.getLogger();
+		if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+			throw new RuntimeException("Unable to create " + outputDir);
+		}
+		final long start = System.currentTimeMillis();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads,
+			new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								runnable.run();
+							}
+							finally {
+								// The executor is only for this batch.
+								designService.releaseSession();
+							}
+						}
+					}, "ReportBatchGenerator-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		final Map<String, String> fileNames = getFileNames(tableNames);
+		final Map<String, Future<Boolean>> futures = new LinkedHashMap<String, Future<Boolean>>();
+		try {
+			for (final String tableName : tableNames) {
+				final String fileName = fileNames.get(tableName);
+				futures.put(tableName, executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						final File file = new File(outputDir, fileName);
+						final TableMetadata metadata = db.getTableMetadata(tableName);
+						if (force) {
+							designService.generateDesign(metadata, file.getPath());
+							return Boolean.TRUE;
+						}
+						return Boolean.valueOf(designService.generateDesignIfChanged(metadata,
+							file.getPath()));
+					}
+				}));
+			}
+			final Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+			int generated = 0;
+			int unchanged = 0;
+			for (final Map.Entry<String, Future<Boolean>> entry : futures.entrySet()) {
+				try {
+					if (entry.getValue().get().booleanValue()) {
+						generated++;
+					}
+					else {
+						unchanged++;
+					}
+				}
+				catch (final ExecutionException e) {
+					failures.put(entry.getKey(), e.getCause());
+					logger.log("Unable to generate design for " + entry.getKey(), e.getCause());
+				}
+			}
+			final Summary summary = new Summary(generated, unchanged, failures,
+					System.currentTimeMillis() - start, threads);
+			logger.log(summary);
+			return summary;
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Maps each table to a design file name. Names that would be the same, or
+	 * differ only in case, get a numeric suffix in the order of the list.
+	 */
+	static Map<String, String> getFileNames(final List<String> tableNames) {
+		final Map<String, String> fileNames = new LinkedHashMap<String, String>();
+		final Set<String> used = new HashSet<String>();
+		for (final String tableName : tableNames) {
+			if (fileNames.containsKey(tableName)) {
+				continue;
+			}
+			final String baseName = getBaseName(tableName);
+			String name = baseName;
+			for (int i = 2; !used.add(name.toLowerCase(Locale.ROOT)); i++) {
+				name = baseName + "_" + i;
+			}
+			fileNames.put(tableName, name + ".rptdesign");
+		}
+		return fileNames;
+	}
+
+	/**
+	 * Drops identifier quotes and replaces what is not safe in a file name.
+	 */
+	private static String getBaseName(final String tableName) {
+		return tableName.replaceAll("[\"`\\[\\]]", "").replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+
+	public static final class Summary {
+		private final int generated;
+		private final int unchanged;
+		private final Map<String, Throwable> failures;
+		private final long elapsed;
+		private final int threads;
+
+		Summary(final int generated, final int unchanged, final Map<String, Throwable> failures,
+				final long elapsed, final int threads) {
+			this.generated = generated;
+			this.unchanged = unchanged;
+			this.failures = Collections.unmodifiableMap(failures);
+			this.elapsed = elapsed;
+			this.threads = threads;
+		}
+
+		public int getGenerated() {
+			return generated;
+		}
+
+		/**
+		 * @return designs kept because their table's columns had not changed
+		 */
+		public int getUnchanged() {
+			return unchanged;
+		}
+
+		public Map<String, Throwable> getFailures() {
+			return failures;
+		}
+
+		/**
+		 * @return wall clock milliseconds for the whole batch
+		 */
+		public long getElapsed() {
+			return elapsed;
+		}
+
+		public double getTablesPerSecond() {
+			final int total = generated + unchanged + failures.size();
+			return elapsed == 0L ? total : total * 1000.0 / elapsed;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Generated %d designs, %d unchanged, %d failed, in %dms on %d"
+				+ " threads (%.1f tables/s)", generated, unchanged, failures.size(), elapsed,
+				threads, getTablesPerSecond());
+		}
+	}
+}
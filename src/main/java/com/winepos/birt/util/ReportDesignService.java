@@ -0,0 +1,346 @@
+package com.winepos.birt.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.framework.Platform;
+import org.eclipse.birt.report.model.api.CellHandle;
+import org.eclipse.birt.report.model.api.ColumnHandle;
+import org.eclipse.birt.report.model.api.DataItemHandle;
+import org.eclipse.birt.report.model.api.DesignConfig;
+import org.eclipse.birt.report.model.api.ElementFactory;
+import org.eclipse.birt.report.model.api.IDesignEngine;
+import org.eclipse.birt.report.model.api.IDesignEngineFactory;
+import org.eclipse.birt.report.model.api.LabelHandle;
+import org.eclipse.birt.report.model.api.OdaDataSetHandle;
+import org.eclipse.birt.report.model.api.OdaDataSourceHandle;
+import org.eclipse.birt.report.model.api.ReportDesignHandle;
+import org.eclipse.birt.report.model.api.RowHandle;
+import org.eclipse.birt.report.model.api.SessionHandle;
+import org.eclipse.birt.report.model.api.SimpleMasterPageHandle;
+import org.eclipse.birt.report.model.api.StructureFactory;
+import org.eclipse.birt.report.model.api.TableHandle;
+import org.eclipse.birt.report.model.api.activity.SemanticException;
+import org.eclipse.birt.report.model.api.elements.DesignChoiceConstants;
+import org.eclipse.birt.report.model.api.elements.structures.ComputedColumn;
+
+import com.ibm.icu.util.ULocale;
+
+/**
+ * Starts the BIRT platform and design engine once and keeps the session warm
+ * so that designs can be generated on demand without paying for the platform
+ * startup each time.
+ */
+public class ReportDesignService {
+	private static final int DESIGN_VERSION = 1;
+
+	private final IDesignEngine engine;
+	private final ThreadLocal<SessionHandle> sessions;
+	private final List<SessionHandle> allSessions;
+	private final long startupTime;
+	private boolean shutdown;
+	private Thread shutdownHook;
+
+	public ReportDesignService(final String birtHome) throws BirtException {
+		final long start = System.currentTimeMillis();
+		//Configure the Engine and start the Platform
+		final DesignConfig config = new DesignConfig();
+		config.setProperty("BIRT_HOME", birtHome);
+		BirtPlatform.startup(config);
+		try {
+			final IDesignEngineFactory factory = (IDesignEngineFactory) Platform
+					.createFactoryObject(IDesignEngineFactory.EXTENSION_DESIGN_ENGINE_FACTORY);
+			this.engine = factory.createDesignEngine(config);
+			// Create a session handle. This is used to manage all open designs.
+			// Your app need create the session only once; we create one per thread
+			// so that designs can be built concurrently.
+			this.sessions = new ThreadLocal<SessionHandle>();
+			this.allSessions = new ArrayList<SessionHandle>();
+			getSession();
+		}
+		catch (final RuntimeException e) {
+			// Give back the platform reference taken above.
+			BirtPlatform.shutdown();
+			throw e;
+		}
+		this.startupTime = System.currentTimeMillis() - start;
+		this.shutdown = false;
+	}
+
+	/**
+	 * @return milliseconds it took to start the platform and design engine
+	 */
+	public long getStartupTime() {
+		return startupTime;
+	}
+
+	public IDesignEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Builds a design listing every column of the table and saves it.
+	 */
+	public void generateDesign(final TableMetadata metadata, final String fileName)
+			throws SemanticException, IOException {
+		final ReportDesignHandle design = buildDesign(metadata);
+		try {
+			design.saveAs(fileName);
+		}
+		finally {
+			design.close();
+		}
+	}
+
+	/**
+	 * Builds and saves the design unless the file already holds a design for a
+	 * table with the same columns. The fingerprint of the columns is kept in a
+	 * file next to the design.
+	 *
+	 * @return false if the existing design was kept
+	 */
+	public boolean generateDesignIfChanged(final TableMetadata metadata, final String fileName)
+			throws SemanticException, IOException {
+		final File designFile = new File(fileName);
+		final File fingerprintFile = getFingerprintFile(designFile);
+		final String fingerprint = getDesignFingerprint(metadata);
+		if (designFile.isFile() && fingerprintFile.isFile()
+			&& fingerprint.equals(readFingerprint(fingerprintFile))) {
+			return false;
+		}
+		// A design that fails to save must not be left looking up to date.
+		Files.deleteIfExists(fingerprintFile.toPath());
+		generateDesign(metadata, fileName);
+		Files.write(fingerprintFile.toPath(), fingerprint.getBytes(StandardCharsets.UTF_8));
+		return true;
+	}
+
+	static File getFingerprintFile(final File designFile) {
+		return new File(designFile.getPath() + ".fingerprint");
+	}
+
+	/**
+	 * The table name is part of the design's query, and the version changes
+	 * whenever {@link #buildDesign} lays designs out differently.
+	 */
+	static String getDesignFingerprint(final TableMetadata metadata) {
+		return DESIGN_VERSION + " " + metadata.getTableName() + " " + metadata.getFingerprint();
+	}
+
+	private static String readFingerprint(final File fingerprintFile) throws IOException {
+		return new String(Files.readAllBytes(fingerprintFile.toPath()), StandardCharsets.UTF_8)
+			.trim();
+	}
+
+	// This function shows how to build a very simple BIRT report with a
+	// minimal set of content: a simple grid with an image and a label.
+	public ReportDesignHandle buildDesign(final TableMetadata metadata)
+			throws SemanticException {
+		final String query = "select * from " + metadata.getTableName();
+		final List<ColumnInfo> columns = metadata.getColumns();
+		final int colCount = columns.size();
+		// Create a new report design.
+		final ReportDesignHandle design = getSession().createDesign();
+		// The element factory creates instances of the various BIRT elements.
+		final ElementFactory factory = design.getElementFactory();
+		// Create a simple master page that describes how the report will
+		// appear when printed.
+		//
+		// Note: The report will fail to load in the BIRT designer
+		// unless you create a master page.
+		final SimpleMasterPageHandle masterPage = factory.newSimpleMasterPage("Page Master"); //$NON-NLS-1$
+		design.getMasterPages().add(masterPage);
+		masterPage.setProperty("type", "custom");
+		masterPage.setProperty("height", "11in");
+		masterPage.setProperty("width", colCount + "in");
+		//
+		// begin POC code for Winepos
+		//
+		final OdaDataSourceHandle dataSource = factory.newOdaDataSource("Data Source",
+			"org.eclipse.birt.report.data.oda.jdbc");
+		design.getDataSources().add(dataSource);
+		// dataSource.setPrivateDriverProperty("metadataBidiFormatStr", "ILYNN");
+		// dataSource.setPrivateDriverProperty("disabledMetadataBidiFormatStr", null);
+		// dataSource.setPrivateDriverProperty("contentBidiFormatStr", "ILYNN");
+		// dataSource.setPrivateDriverProperty("disabledContentBidiFormatStr", null);
+		dataSource.setProperty("odaDriverClass", "org.postgresql.Driver");
+		dataSource.setProperty("odaURL", "jdbc:postgresql://localhost:5432/postgres");
+		dataSource.setProperty("odaUser", "postgres");
+		dataSource.setEncryption("odaPassword", "base64");
+		dataSource.setProperty("odaPassword", "Zm9vYmFy");
+		//
+		final OdaDataSetHandle dataSet = factory.newOdaDataSet("Data Set",
+			"org.eclipse.birt.report.data.oda.jdbc.JdbcSelectDataSet");
+		design.getDataSets().add(dataSet);
+		dataSet.setDataSource("Data Source");
+		dataSet.setQueryText(query);
+		//
+		final TableHandle table = factory.newTableItem("Table", colCount, 1, 1, 1);
+		design.getBody().add(table);
+		table.setWidth("100%");
+		table.setDataSet(design.findDataSet("Data Set"));
+		for (int i = 0; i < colCount; i++) {
+			final ColumnHandle column = table.findColumn(i + 1);
+			column.setProperty("width", "1in");
+		}
+		for (int i = 0; i < colCount; i++) {
+			final ComputedColumn cs1 = StructureFactory.createComputedColumn();
+			final ColumnInfo column = columns.get(i);
+			final String colName = column.getName();
+			cs1.setName(colName);
+			cs1.setExpression("dataSetRow[\"" + colName + "\"]");
+			cs1.setDataType(getBirtDataType(column.getJdbcType()));
+			table.addColumnBinding(cs1, false);
+		}
+		// table header
+		final RowHandle tableHeader = (RowHandle) table.getHeader().get(0);
+		for (int i = 0; i < colCount; i++) {
+			final CellHandle cell = (CellHandle) tableHeader.getCells().get(i);
+			cell.setColumnSpan(1);
+			cell.setRowSpan(1);
+			final LabelHandle label1 = factory.newLabel("label");
+			label1.setProperty("fontWeight", "bold");
+			label1.setText(columns.get(i).getName());
+			cell.getContent().add(label1);
+		}
+		// table detail
+		final RowHandle tableDetail = (RowHandle) table.getDetail().get(0);
+		for (int i = 0; i < colCount; i++) {
+			final CellHandle cell = (CellHandle) tableDetail.getCells().get(i);
+			final DataItemHandle data = factory.newDataItem("data");
+			data.setResultSetColumn(columns.get(i).getName());
+			cell.getContent().add(data);
+		}
+		// table footer
+		final RowHandle tableFooter = (RowHandle) table.getFooter().get(0);
+		for (int i = 0; i < colCount; i++) {
+			final CellHandle cell = (CellHandle) tableFooter.getCells().get(i);
+			cell.setColumnSpan(1);
+			cell.setRowSpan(1);
+		}
+		//
+		return design;
+	}
+
+	private SessionHandle getSession() {
+		SessionHandle session = sessions.get();
+		if (session == null) {
+			synchronized (this) {
+				if (shutdown) {
+					throw new IllegalStateException("Report design service has been shut down");
+				}
+				session = engine.newSessionHandle(ULocale.ENGLISH);
+				allSessions.add(session);
+			}
+			sessions.set(session);
+		}
+		return session;
+	}
+
+	/**
+	 * Closes the calling thread's session. Threads that only live for a while,
+	 * such as the workers of a batch, call this before they end so that their
+	 * sessions are not kept until {@link #shutdown()}.
+	 */
+	public void releaseSession() {
+		final SessionHandle session = sessions.get();
+		if (session == null) {
+			return;
+		}
+		sessions.remove();
+		synchronized (this) {
+			// Already closed by shutdown() otherwise.
+			if (!allSessions.remove(session)) {
+				return;
+			}
+		}
+		try {
+			session.closeAll(false);
+		}
+		catch (final IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public synchronized void shutdown() {
+		if (shutdown) {
+			return;
+		}
+		shutdown = true;
+		for (final SessionHandle session : allSessions) {
+			try {
+				session.closeAll(false);
+			}
+			catch (final IOException e) {
+				e.printStackTrace();
+			}
+		}
+		allSessions.clear();
+		BirtPlatform.shutdown();
+		if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			}
+			catch (final IllegalStateException e) {
+				// already shutting down
+			}
+		}
+	}
+
+	/**
+	 * Shuts the service down when the JVM exits.
+	 */
+	public synchronized void registerShutdownHook() {
+		if (shutdownHook != null) {
+			return;
+		}
+		shutdownHook = new Thread("ReportDesignService shutdown") {
+			@Override
+			public void run() {
+				ReportDesignService.this.shutdown();
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	static String getBirtDataType(final int jdbcType) {
+		switch (jdbcType) {
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				return DesignChoiceConstants.COLUMN_DATA_TYPE_INTEGER;
+			case Types.BIGINT:
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				return DesignChoiceConstants.COLUMN_DATA_TYPE_DECIMAL;
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return DesignChoiceConstants.COLUMN_DATA_TYPE_FLOAT;
+			case Types.BIT:
+			case Types.BOOLEAN:
+				return DesignChoiceConstants.COLUMN_DATA_TYPE_BOOLEAN;
+			case Types.DATE:
+				return DesignChoiceConstants.COLUMN_DATA_TYPE_DATE;
+			case Types.TIME:
+			case Types.TIME_WITH_TIMEZONE:
+				return DesignChoiceConstants.COLUMN_DATA_TYPE_TIME;
+			case Types.TIMESTAMP:
+			case Types.TIMESTAMP_WITH_TIMEZONE:
+				return DesignChoiceConstants.COLUMN_DATA_TYPE_DATETIME;
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+				return DesignChoiceConstants.COLUMN_DATA_TYPE_BLOB;
+			default:
+				return DesignChoiceConstants.COLUMN_DATA_TYPE_STRING;
+		}
+	}
+}
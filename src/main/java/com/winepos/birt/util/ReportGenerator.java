@@ -1,40 +1,43 @@
 package com.winepos.birt.util;
 
+import java.io.File;
 import java.io.IOException;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
-import org.eclipse.birt.core.framework.Platform;
-import org.eclipse.birt.report.model.api.CellHandle;
-import org.eclipse.birt.report.model.api.ColumnHandle;
-import org.eclipse.birt.report.model.api.DataItemHandle;
-import org.eclipse.birt.report.model.api.DesignConfig;
-import org.eclipse.birt.report.model.api.ElementFactory;
-import org.eclipse.birt.report.model.api.IDesignEngine;
-import org.eclipse.birt.report.model.api.IDesignEngineFactory;
-import org.eclipse.birt.report.model.api.LabelHandle;
-import org.eclipse.birt.report.model.api.OdaDataSetHandle;
-import org.eclipse.birt.report.model.api.OdaDataSourceHandle;
-import org.eclipse.birt.report.model.api.ReportDesignHandle;
-import org.eclipse.birt.report.model.api.RowHandle;
-import org.eclipse.birt.report.model.api.SessionHandle;
-import org.eclipse.birt.report.model.api.SimpleMasterPageHandle;
-import org.eclipse.birt.report.model.api.StructureFactory;
-import org.eclipse.birt.report.model.api.TableHandle;
+import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.report.model.api.activity.SemanticException;
-import org.eclipse.birt.report.model.api.elements.structures.ComputedColumn;
-
-import com.ibm.icu.util.ULocale;
 
 public class ReportGenerator {
+	private static ReportDesignService designService;
+
 	public static void main(final String[] args) throws ClassNotFoundException, SQLException {
 		try {
-			buildReport(args[0]);
+			if ("--batch".equals(args[0])) {
+				// --batch <output dir> <table>...
+				buildReports(new File(args[1]), Arrays.asList(args).subList(2, args.length));
+			}
+			else if ("--pattern".equals(args[0])) {
+				// --pattern <output dir> <schema pattern> [<table pattern>]
+				buildReports(new File(args[1]), args[2], args.length > 3 ? args[3] : null);
+			}
+			else if ("--render".equals(args[0])) {
+				// --render <format> <output dir> <design>...
+				renderReports(args[1], new File(args[2]),
+					Arrays.asList(args).subList(3, args.length));
+			}
+			else if ("--export".equals(args[0])) {
+				// --export <csv|tsv> <output file> <table>
+				exportTable(CopyExporter.Format.valueOf(args[1].toUpperCase()),
+					new File(args[2]), args[3]);
+			}
+			else {
+				buildReport(args[0]);
+			}
 		}
 		catch (final IOException e) {
 			// TODO Auto-generated catch block
@@ -44,140 +47,106 @@ public class ReportGenerator {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+		catch (final BirtException e) {
+			e.printStackTrace();
+		}
+		catch (final InterruptedException e) {
+			e.printStackTrace();
+		}
 	}
 
-	// This function shows how to build a very simple BIRT report with a
-	// minimal set of content: a simple grid with an image and a label.
-	static void buildReport(final String tableName)
-			throws IOException, SemanticException, ClassNotFoundException, SQLException {
+	/**
+	 * Returns the shared design service, starting the BIRT platform on first use.
+	 */
+	static synchronized ReportDesignService getDesignService(final Configuration configuration)
+			throws BirtException {
+		if (designService == null) {
+			designService = new ReportDesignService(configuration.getStringProperty("birt.home",
+				"/disk1/eclipse/birt-runtime-4_8_0/ReportEngine"));
+			designService.registerShutdownHook();
+			configuration.getLogger().log(
+				"Design engine started in " + designService.getStartupTime() + "ms");
+		}
+		return designService;
+	}
+
+	static void buildReport(final String tableName) throws IOException, SemanticException,
+			ClassNotFoundException, SQLException, BirtException {
 		final Configuration configuration = Configuration.load();
 		final DbInterface db = new DbInterface(configuration);
-		final Connection connection = db.getConnection();
-		final String query = "select * from " + tableName;
-		final List<String> colNames = new ArrayList<>();
-		int colCount;
+		final TableMetadata metadata = db.getTableMetadata(tableName);
+		final ReportDesignService service = getDesignService(configuration);
+		// Save the design and close it, unless the table has not changed.
+		if (service.generateDesignIfChanged(metadata,
+			"/disk1/home/winepos/projects/reports/reports/sample.rptdesign")) { //$NON-NLS-1$
+			System.out.println("Finished");
+		}
+		else {
+			System.out.println("Unchanged");
+		}
+		// We're done!
+	}
+
+	/**
+	 * Dumps the table that {@link #buildReport} would design, without BIRT.
+	 */
+	static void exportTable(final CopyExporter.Format format, final File file,
+			final String tableName) throws IOException, ClassNotFoundException, SQLException {
+		final Configuration configuration = Configuration.load();
+		System.out.println(new CopyExporter(configuration).exportTable(tableName, file, format));
+	}
+
+	static void buildReports(final File outputDir, final List<String> tableNames)
+			throws IOException, ClassNotFoundException, SQLException, BirtException,
+			InterruptedException {
+		final Configuration configuration = Configuration.load();
+		final ReportBatchGenerator generator = new ReportBatchGenerator(configuration,
+				getDesignService(configuration));
+		System.out.println(generator.generate(tableNames, outputDir));
+	}
+
+	static void buildReports(final File outputDir, final String schemaPattern,
+			final String tablePattern) throws IOException, ClassNotFoundException,
+			SQLException, BirtException, InterruptedException {
+		final Configuration configuration = Configuration.load();
+		final ReportBatchGenerator generator = new ReportBatchGenerator(configuration,
+				getDesignService(configuration));
+		final List<String> tableNames = generator.findTables(schemaPattern, tablePattern);
+		System.out.println(generator.generate(tableNames, outputDir));
+	}
+
+	static void renderReports(final String format, final File outputDir,
+			final List<String> designPaths) throws IOException, ClassNotFoundException,
+			SQLException, BirtException, InterruptedException {
+		final Configuration configuration = Configuration.load();
+		final Logger logger = configuration.getLogger();
+		final ReportRenderService service = new ReportRenderService(
+				configuration.getStringProperty("birt.home",
+					"/disk1/eclipse/birt-runtime-4_8_0/ReportEngine"),
+				configuration.getIntProperty("report.render.threads",
+					Runtime.getRuntime().availableProcessors()),
+				configuration.getIntProperty("report.render.queueSize", 100));
+		logger.log("Report engine started in " + service.getStartupTime() + "ms");
 		try {
-			final PreparedStatement statement = connection.prepareStatement(query);
-			try {
-				final ResultSet resultSet = statement.executeQuery();
+			final List<Future<ReportRenderService.RenderResult>> results =
+					new ArrayList<Future<ReportRenderService.RenderResult>>();
+			for (final String designPath : designPaths) {
+				final String name = new File(designPath).getName().replaceFirst(
+					"\\.rptdesign$", "");
+				results.add(service.render(designPath,
+					new File(outputDir, name + "." + format).getPath(), format, null));
+			}
+			for (int i = 0; i < results.size(); i++) {
 				try {
-					final ResultSetMetaData metaData = resultSet.getMetaData();
-					colCount = metaData.getColumnCount();
-					for (int i = 0; i < colCount; i++) {
-						final String colName = metaData.getColumnName(i + 1);
-						colNames.add(colName);
-					}
+					logger.log(results.get(i).get().toString());
 				}
-				finally {
-					resultSet.close();
+				catch (final ExecutionException e) {
+					logger.log("Unable to render " + designPaths.get(i), e.getCause());
 				}
 			}
-			finally {
-				statement.close();
-			}
 		}
 		finally {
-			connection.close();
-		}
-		// Create a session handle. This is used to manage all open designs.
-		// Your app need create the session only once.
-		//Configure the Engine and start the Platform
-		final DesignConfig config = new DesignConfig();
-		config.setProperty("BIRT_HOME", "/disk1/eclipse/birt-runtime-4_8_0/ReportEngine");
-		IDesignEngine engine = null;
-		try {
-			Platform.startup(config);
-			final IDesignEngineFactory factory = (IDesignEngineFactory) Platform.createFactoryObject(
-				IDesignEngineFactory.EXTENSION_DESIGN_ENGINE_FACTORY);
-			engine = factory.createDesignEngine(config);
-		}
-		catch (final Exception ex) {
-			ex.printStackTrace();
-		}
-		final SessionHandle session = engine.newSessionHandle(ULocale.ENGLISH);
-		// Create a new report design.
-		final ReportDesignHandle design = session.createDesign();
-		// The element factory creates instances of the various BIRT elements.
-		final ElementFactory factory = design.getElementFactory();
-		// Create a simple master page that describes how the report will
-		// appear when printed.
-		//
-		// Note: The report will fail to load in the BIRT designer
-		// unless you create a master page.
-		final SimpleMasterPageHandle masterPage = factory.newSimpleMasterPage("Page Master"); //$NON-NLS-1$
-		design.getMasterPages().add(masterPage);
-		masterPage.setProperty("type", "custom");
-		masterPage.setProperty("height", "11in");
-		masterPage.setProperty("width", colCount + "in");
-		//
-		// begin POC code for Winepos
-		//
-		final OdaDataSourceHandle dataSource = factory.newOdaDataSource("Data Source",
-			"org.eclipse.birt.report.data.oda.jdbc");
-		design.getDataSources().add(dataSource);
-		// dataSource.setPrivateDriverProperty("metadataBidiFormatStr", "ILYNN");
-		// dataSource.setPrivateDriverProperty("disabledMetadataBidiFormatStr", null);
-		// dataSource.setPrivateDriverProperty("contentBidiFormatStr", "ILYNN");
-		// dataSource.setPrivateDriverProperty("disabledContentBidiFormatStr", null);
-		dataSource.setProperty("odaDriverClass", "org.postgresql.Driver");
-		dataSource.setProperty("odaURL", "jdbc:postgresql://localhost:5432/postgres");
-		dataSource.setProperty("odaUser", "postgres");
-		dataSource.setEncryption("odaPassword", "base64");
-		dataSource.setProperty("odaPassword", "Zm9vYmFy");
-		//
-		final OdaDataSetHandle dataSet = factory.newOdaDataSet("Data Set",
-			"org.eclipse.birt.report.data.oda.jdbc.JdbcSelectDataSet");
-		design.getDataSets().add(dataSet);
-		dataSet.setDataSource("Data Source");
-		dataSet.setQueryText(query);
-		//
-		final TableHandle table = factory.newTableItem("Table", colCount, 1, 1, 1);
-		design.getBody().add(table);
-		table.setWidth("100%");
-		table.setDataSet(design.findDataSet("Data Set"));
-		for (int i = 0; i < colCount; i++) {
-			final ColumnHandle column = table.findColumn(i + 1);
-			column.setProperty("width", "1in");
+			service.shutdown();
 		}
-		for (int i = 0; i < colCount; i++) {
-			final ComputedColumn cs1 = StructureFactory.createComputedColumn();
-			final String colName = colNames.get(i);
-			cs1.setName(colName);
-			cs1.setExpression("dataSetRow[\"" + colName + "\"]");
-			cs1.setDataType("string");
-			table.addColumnBinding(cs1, false);
-		}
-		// table header
-		final RowHandle tableHeader = (RowHandle) table.getHeader().get(0);
-		for (int i = 0; i < colCount; i++) {
-			final CellHandle cell = (CellHandle) tableHeader.getCells().get(i);
-			cell.setColumnSpan(1);
-			cell.setRowSpan(1);
-			final LabelHandle label1 = factory.newLabel("label");
-			label1.setProperty("fontWeight", "bold");
-			label1.setText(colNames.get(i));
-			cell.getContent().add(label1);
-		}
-		// table detail
-		final RowHandle tableDetail = (RowHandle) table.getDetail().get(0);
-		for (int i = 0; i < colCount; i++) {
-			final CellHandle cell = (CellHandle) tableDetail.getCells().get(i);
-			final DataItemHandle data = factory.newDataItem("data");
-			data.setResultSetColumn(colNames.get(i));
-			cell.getContent().add(data);
-		}
-		// table footer
-		final RowHandle tableFooter = (RowHandle) table.getFooter().get(0);
-		for (int i = 0; i < colCount; i++) {
-			final CellHandle cell = (CellHandle) tableFooter.getCells().get(i);
-			cell.setColumnSpan(1);
-			cell.setRowSpan(1);
-		}
-		//
-		// Save the design and close it.
-		design.saveAs("/disk1/home/winepos/projects/reports/reports/sample.rptdesign"); //$NON-NLS-1$
-		design.close();
-		System.out.println("Finished");
-		// We're done!
 	}
 }
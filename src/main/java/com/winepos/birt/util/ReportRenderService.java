@@ -0,0 +1,372 @@
+package com.winepos.birt.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.framework.Platform;
+import org.eclipse.birt.report.engine.api.DataExtractionFormatInfo;
+import org.eclipse.birt.report.engine.api.DataExtractionOption;
+import org.eclipse.birt.report.engine.api.EXCELRenderOption;
+import org.eclipse.birt.report.engine.api.EngineConfig;
+import org.eclipse.birt.report.engine.api.EngineException;
+import org.eclipse.birt.report.engine.api.HTMLRenderOption;
+import org.eclipse.birt.report.engine.api.IDataExtractionTask;
+import org.eclipse.birt.report.engine.api.IRenderOption;
+import org.eclipse.birt.report.engine.api.IReportEngine;
+import org.eclipse.birt.report.engine.api.IReportEngineFactory;
+import org.eclipse.birt.report.engine.api.IReportDocument;
+import org.eclipse.birt.report.engine.api.IReportRunnable;
+import org.eclipse.birt.report.engine.api.IResultSetItem;
+import org.eclipse.birt.report.engine.api.IRunAndRenderTask;
+import org.eclipse.birt.report.engine.api.IRunTask;
+import org.eclipse.birt.report.engine.api.PDFRenderOption;
+import org.eclipse.birt.report.engine.api.RenderOption;
+
+/**
+ * Runs and renders report designs. The report engine is started once, parsed
+ * designs are cached by path until the file changes, and tasks run on a
+ * bounded pool of worker threads.
+ */
+public class ReportRenderService {
+	private static final String PLUGIN_ID = "com.winepos.birt.util";
+	private final IReportEngine engine;
+	private final ThreadPoolExecutor executor;
+	private final ConcurrentMap<String, CachedRunnable> runnables;
+	private final long startupTime;
+	private final AtomicLong cacheHits;
+	private final AtomicLong cacheMisses;
+
+	/**
+	 * @param threads number of reports rendered at once
+	 * @param queueSize number of reports that can wait for a thread; when the queue
+	 *            is full the caller renders the report itself
+	 */
+	public ReportRenderService(final String birtHome, final int threads, final int queueSize)
+			throws BirtException {
+		final long start = System.currentTimeMillis();
+		final EngineConfig config = new EngineConfig();
+		config.setProperty("BIRT_HOME", birtHome);
+		BirtPlatform.startup(config);
+		IReportEngine engine = null;
+		try {
+			final IReportEngineFactory factory = (IReportEngineFactory) Platform
+					.createFactoryObject(IReportEngineFactory.EXTENSION_REPORT_ENGINE_FACTORY);
+			engine = factory.createReportEngine(config);
+			this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+						private final AtomicInteger count = new AtomicInteger();
+
+						@Override
+						public Thread newThread(final Runnable runnable) {
+							final Thread thread = new Thread(runnable,
+									"ReportRenderService-" + count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					}, new ThreadPoolExecutor.CallerRunsPolicy());
+		}
+		catch (final RuntimeException e) {
+			// Give back the platform reference taken above.
+			if (engine != null) {
+				engine.destroy();
+			}
+			BirtPlatform.shutdown();
+			throw e;
+		}
+		this.engine = engine;
+		this.startupTime = System.currentTimeMillis() - start;
+		this.runnables = new ConcurrentHashMap<String, CachedRunnable>();
+		this.cacheHits = new AtomicLong();
+		this.cacheMisses = new AtomicLong();
+	}
+
+	/**
+	 * @return milliseconds it took to start the platform and report engine
+	 */
+	public long getStartupTime() {
+		return startupTime;
+	}
+
+	public IReportEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Returns the parsed design, parsing it only if it is not cached or the file
+	 * has changed since it was parsed.
+	 */
+	public IReportRunnable getRunnable(final String designPath) throws EngineException {
+		final File file = new File(designPath);
+		final String key = file.getAbsolutePath();
+		final long lastModified = file.lastModified();
+		final CachedRunnable cached = runnables.get(key);
+		if (cached != null && cached.lastModified == lastModified) {
+			cacheHits.incrementAndGet();
+			return cached.runnable;
+		}
+		cacheMisses.incrementAndGet();
+		final IReportRunnable runnable = engine.openReportDesign(key);
+		runnables.put(key, new CachedRunnable(runnable, lastModified));
+		return runnable;
+	}
+
+	public void invalidate(final String designPath) {
+		runnables.remove(new File(designPath).getAbsolutePath());
+	}
+
+	public Future<RenderResult> render(final String designPath, final String outputPath,
+			final String format, final Map<String, ?> parameters) {
+		return executor.submit(new Callable<RenderResult>() {
+			@Override
+			public RenderResult call() throws BirtException {
+				return renderNow(designPath, outputPath, format, parameters);
+			}
+		});
+	}
+
+	/**
+	 * Runs and renders the design on the calling thread.
+	 *
+	 * @param format an emitter format such as html, pdf, xls or xlsx, or csv to
+	 *            extract the report's first result set
+	 */
+	public RenderResult renderNow(final String designPath, final String outputPath,
+			final String format, final Map<String, ?> parameters) throws BirtException {
+		final long start = System.nanoTime();
+		final IReportRunnable runnable = getRunnable(designPath);
+		final long opened = System.nanoTime();
+		if ("csv".equalsIgnoreCase(format)) {
+			final List<Throwable> errors = extractCsv(runnable, outputPath, parameters);
+			return new RenderResult(designPath, outputPath, format, opened - start,
+					System.nanoTime() - opened, errors);
+		}
+		final IRunAndRenderTask task = engine.createRunAndRenderTask(runnable);
+		try {
+			if (parameters != null) {
+				task.setParameterValues(parameters);
+			}
+			task.setRenderOption(createRenderOption(outputPath, format));
+			task.run();
+			@SuppressWarnings("unchecked")
+			final List<Throwable> errors = task.getErrors();
+			final long finished = System.nanoTime();
+			return new RenderResult(designPath, outputPath, format, opened - start,
+					finished - opened, errors);
+		}
+		finally {
+			task.close();
+		}
+	}
+
+	/**
+	 * There is no CSV emitter, so the report is run into a temporary report
+	 * document and the first result set is extracted from that as CSV.
+	 */
+	private List<Throwable> extractCsv(final IReportRunnable runnable, final String outputPath,
+			final Map<String, ?> parameters) throws BirtException {
+		final File documentFile;
+		try {
+			documentFile = File.createTempFile("report", ".rptdocument");
+		}
+		catch (final IOException e) {
+			throw new BirtException(PLUGIN_ID, "Unable to create report document", new Object[0],
+				e);
+		}
+		try {
+			final List<Throwable> errors = new ArrayList<Throwable>();
+			final IRunTask runTask = engine.createRunTask(runnable);
+			try {
+				if (parameters != null) {
+					runTask.setParameterValues(parameters);
+				}
+				runTask.run(documentFile.getPath());
+				@SuppressWarnings("unchecked")
+				final List<Throwable> runErrors = runTask.getErrors();
+				errors.addAll(runErrors);
+			}
+			finally {
+				runTask.close();
+			}
+			final IReportDocument document = engine.openReportDocument(documentFile.getPath());
+			try {
+				final IDataExtractionTask extractionTask = engine.createDataExtractionTask(
+					document);
+				try {
+					final List<?> resultSets = extractionTask.getResultSetList();
+					if (!resultSets.isEmpty()) {
+						extractionTask.selectResultSet(
+							((IResultSetItem) resultSets.get(0)).getResultSetName());
+					}
+					final DataExtractionOption option = new DataExtractionOption();
+					option.setExtension(getDataExtractionId("csv"));
+					option.setOutputFormat("csv");
+					final OutputStream out = new BufferedOutputStream(new FileOutputStream(
+						outputPath));
+					try {
+						option.setOutputStream(out);
+						extractionTask.extract(option);
+					}
+					finally {
+						out.close();
+					}
+					@SuppressWarnings("unchecked")
+					final List<Throwable> extractionErrors = extractionTask.getErrors();
+					errors.addAll(extractionErrors);
+				}
+				finally {
+					extractionTask.close();
+				}
+			}
+			finally {
+				document.close();
+			}
+			return errors;
+		}
+		catch (final IOException e) {
+			throw new BirtException(PLUGIN_ID, "Unable to write " + outputPath, new Object[0], e);
+		}
+		finally {
+			documentFile.delete();
+		}
+	}
+
+	private String getDataExtractionId(final String format) throws BirtException {
+		for (final DataExtractionFormatInfo info : engine.getDataExtractionFormatInfo()) {
+			if (format.equalsIgnoreCase(info.getFormat())) {
+				return info.getId();
+			}
+		}
+		throw new BirtException("No data extraction extension for " + format);
+	}
+
+	static IRenderOption createRenderOption(final String outputPath, final String format) {
+		final String lowerFormat = format.toLowerCase();
+		final RenderOption option;
+		if ("html".equals(lowerFormat)) {
+			final HTMLRenderOption htmlOption = new HTMLRenderOption();
+			htmlOption.setEmbeddable(false);
+			option = htmlOption;
+		}
+		else if ("pdf".equals(lowerFormat)) {
+			option = new PDFRenderOption();
+		}
+		else if ("xls".equals(lowerFormat) || "xlsx".equals(lowerFormat)) {
+			option = new EXCELRenderOption();
+		}
+		else {
+			option = new RenderOption();
+		}
+		option.setOutputFormat(lowerFormat);
+		option.setOutputFileName(outputPath);
+		return option;
+	}
+
+	public long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	public long getCacheMisses() {
+		return cacheMisses.get();
+	}
+
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+
+	public int getQueuedCount() {
+		return executor.getQueue().size();
+	}
+
+	public void shutdown() throws InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(1L, TimeUnit.MINUTES);
+		runnables.clear();
+		engine.destroy();
+		BirtPlatform.shutdown();
+	}
+
+	private static final class CachedRunnable {
+		final IReportRunnable runnable;
+		final long lastModified;
+
+		CachedRunnable(final IReportRunnable runnable, final long lastModified) {
+			this.runnable = runnable;
+			this.lastModified = lastModified;
+		}
+	}
+
+	public static final class RenderResult {
+		private final String designPath;
+		private final String outputPath;
+		private final String format;
+		private final long openNanos;
+		private final long runNanos;
+		private final List<Throwable> errors;
+
+		RenderResult(final String designPath, final String outputPath, final String format,
+				final long openNanos, final long runNanos, final List<Throwable> errors) {
+			this.designPath = designPath;
+			this.outputPath = outputPath;
+			this.format = format;
+			this.openNanos = openNanos;
+			this.runNanos = runNanos;
+			this.errors = errors == null ? Collections.<Throwable> emptyList()
+				: Collections.unmodifiableList(errors);
+		}
+
+		public String getDesignPath() {
+			return designPath;
+		}
+
+		public String getOutputPath() {
+			return outputPath;
+		}
+
+		public String getFormat() {
+			return format;
+		}
+
+		/**
+		 * @return nanoseconds spent getting the parsed design, mostly zero when cached
+		 */
+		public long getOpenNanos() {
+			return openNanos;
+		}
+
+		/**
+		 * @return nanoseconds spent running and rendering the report
+		 */
+		public long getRunNanos() {
+			return runNanos;
+		}
+
+		public List<Throwable> getErrors() {
+			return errors;
+		}
+
+		@Override
+		public String toString() {
+			return designPath + " -> " + outputPath + " (" + format + "): open "
+				+ openNanos / 1000000L + "ms, run " + runNanos / 1000000L + "ms, "
+				+ errors.size() + " errors";
+		}
+	}
+}
@@ -0,0 +1,425 @@
+package com.winepos.birt.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Rows of read queries, kept for a time so that reports that run the same
+ * query again are answered without going to the database. Entries are keyed
+ * by SQL text and parameters and hold their rows encoded in one byte array;
+ * when the cache holds more than {@code maxBytes} the least recently used
+ * entries are evicted. Each SQL resource or statement can have its own TTL; a
+ * TTL of 0 leaves its results uncached.
+ */
+public class ResultCache implements ResultCacheMXBean {
+	private static final long ENTRY_OVERHEAD = 128L;
+	private final long maxBytes;
+	private final long defaultTtl;
+	private final ConcurrentMap<String, Long> ttls;
+	private final LinkedHashMap<Key, Entry> entries;
+	private long bytes;
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder evictions;
+	private final LongAdder expirations;
+	private final LongAdder rejections;
+	private volatile ObjectName objectName;
+
+	/**
+	 * @param maxBytes how much the cached rows may take, roughly
+	 * @param defaultTtl milliseconds to keep results of statements without a TTL
+	 *            of their own, 0 to not cache them
+	 */
+	public ResultCache(final long maxBytes, final long defaultTtl) {
+		this.maxBytes = Math.max(maxBytes, 0L);
+		this.defaultTtl = Math.max(defaultTtl, 0L);
+		this.ttls = new ConcurrentHashMap<String, Long>();
+		this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+		this.expirations = new LongAdder();
+		this.rejections = new LongAdder();
+	}
+
+	/**
+	 * @param name SQL resource name, or statement name as given by
+	 *            {@link StatementStats#getName(String)}
+	 * @return milliseconds to keep the results of {@code name}, 0 if they are not
+	 *         cached
+	 */
+	public long getTtl(final String name) {
+		if (maxBytes == 0L) {
+			return 0L;
+		}
+		final Long ttl = ttls.get(name);
+		return ttl == null ? defaultTtl : ttl.longValue();
+	}
+
+	public void setTtl(final String name, final long ttl) {
+		ttls.put(name, Long.valueOf(Math.max(ttl, 0L)));
+	}
+
+	/**
+	 * @return the largest result that is cached; larger ones would evict too
+	 *         much
+	 */
+	public long getMaxEntryBytes() {
+		return Math.min(maxBytes / 4L, Integer.MAX_VALUE - 8L);
+	}
+
+	/**
+	 * @return a result set over the cached rows, or null if there are none or
+	 *         they have expired
+	 */
+	public ResultSet get(final Key key) {
+		final Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry != null && System.currentTimeMillis() >= entry.expires) {
+				remove(key);
+				expirations.increment();
+				misses.increment();
+				return null;
+			}
+		}
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return new CachedResultSet(entry.metaData, entry.rows, entry.rowCount);
+	}
+
+	/**
+	 * @return a writer to copy the rows of {@code resultSet} to as they are read,
+	 *         or null if its metadata cannot be copied
+	 */
+	public Writer newWriter(final ResultSet resultSet) {
+		try {
+			return new Writer(new CachedResultSet.MetaData(resultSet.getMetaData()),
+					getMaxEntryBytes());
+		}
+		catch (final SQLException e) {
+			rejections.increment();
+			return null;
+		}
+	}
+
+	/**
+	 * Caches the rows copied to {@code writer} for {@code ttl} milliseconds,
+	 * unless it gave up on them.
+	 */
+	public void put(final Key key, final Writer writer, final long ttl) {
+		if (writer.out == null) {
+			if (writer.rejected) {
+				rejections.increment();
+			}
+			return;
+		}
+		final byte[] rows = writer.bytes.toByteArray();
+		final Entry entry = new Entry(writer.metaData, rows, writer.rowCount,
+				System.currentTimeMillis() + ttl,
+				rows.length + writer.metaData.getSize() + key.getSize() + ENTRY_OVERHEAD);
+		synchronized (this) {
+			final Entry previous = entries.put(key, entry);
+			if (previous != null) {
+				bytes -= previous.size;
+			}
+			bytes += entry.size;
+			if (bytes > maxBytes) {
+				evict();
+			}
+		}
+	}
+
+	/**
+	 * Drops expired entries and then, while still over budget, the least
+	 * recently used ones.
+	 */
+	private void evict() {
+		final long now = System.currentTimeMillis();
+		Iterator<Map.Entry<Key, Entry>> i = entries.entrySet().iterator();
+		while (i.hasNext()) {
+			final Entry entry = i.next().getValue();
+			if (now >= entry.expires) {
+				i.remove();
+				bytes -= entry.size;
+				expirations.increment();
+			}
+		}
+		i = entries.entrySet().iterator();
+		while (bytes > maxBytes && i.hasNext()) {
+			final Entry entry = i.next().getValue();
+			i.remove();
+			bytes -= entry.size;
+			evictions.increment();
+		}
+	}
+
+	private void remove(final Key key) {
+		final Entry entry = entries.remove(key);
+		if (entry != null) {
+			bytes -= entry.size;
+		}
+	}
+
+	@Override
+	public synchronized void invalidate(final String name) {
+		final Iterator<Map.Entry<Key, Entry>> i = entries.entrySet().iterator();
+		while (i.hasNext()) {
+			final Map.Entry<Key, Entry> entry = i.next();
+			if (entry.getKey().name.equals(name)) {
+				i.remove();
+				bytes -= entry.getValue().size;
+			}
+		}
+	}
+
+	@Override
+	public synchronized void invalidateAll() {
+		entries.clear();
+		bytes = 0L;
+	}
+
+	@Override
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	@Override
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	@Override
+	public long getHits() {
+		return hits.sum();
+	}
+
+	@Override
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	@Override
+	public double getHitRate() {
+		final long hits = getHits();
+		final long lookups = hits + getMisses();
+		return lookups == 0L ? 0.0 : (double) hits / lookups;
+	}
+
+	@Override
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	@Override
+	public long getExpirations() {
+		return expirations.sum();
+	}
+
+	@Override
+	public long getRejections() {
+		return rejections.sum();
+	}
+
+	/**
+	 * Registers the cache with the platform MBean server under
+	 * {@code com.winepos.birt.util:type=ResultCache,name=<name>}.
+	 */
+	public synchronized void registerMBean(final String name) throws JMException {
+		if (objectName != null) {
+			return;
+		}
+		final ObjectName objectName = new ObjectName(
+			"com.winepos.birt.util:type=ResultCache,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		this.objectName = objectName;
+	}
+
+	public synchronized void unregisterMBean() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		}
+		catch (final JMException e) {
+			// Already gone.
+		}
+		objectName = null;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("results: %d, %d of %d bytes, hit rate: %.1f%%, hits: %d, "
+			+ "misses: %d, evictions: %d, expirations: %d, rejections: %d", getEntryCount(),
+			getBytes(), maxBytes, getHitRate() * 100.0, getHits(), getMisses(), getEvictions(),
+			getExpirations(), getRejections());
+	}
+
+	public static final class Key {
+		private final String name;
+		private final String sql;
+		private final Object[] parameters;
+		private final int hashCode;
+
+		/**
+		 * @param name what the TTL and {@link ResultCache#invalidate(String)} go by
+		 * @param parameters copied, along with dates and arrays among them, so that
+		 *            the key does not change when the caller reuses them
+		 */
+		public Key(final String name, final String sql, final Object[] parameters) {
+			this.name = name;
+			this.sql = sql;
+			this.parameters = (Object[]) copy(parameters);
+			this.hashCode = (name.hashCode() * 31 + sql.hashCode()) * 31
+				+ Arrays.deepHashCode(this.parameters);
+		}
+
+		private static Object copy(final Object value) {
+			if (value instanceof Date) {
+				return ((Date) value).clone();
+			}
+			if (value instanceof Calendar) {
+				return ((Calendar) value).clone();
+			}
+			if (value instanceof Object[]) {
+				final Object[] array = ((Object[]) value).clone();
+				for (int i = 0; i < array.length; i++) {
+					array[i] = copy(array[i]);
+				}
+				return array;
+			}
+			if (value != null && value.getClass().isArray()) {
+				final int length = Array.getLength(value);
+				final Object array = Array.newInstance(value.getClass().getComponentType(),
+					length);
+				System.arraycopy(value, 0, array, 0, length);
+				return array;
+			}
+			return value;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		long getSize() {
+			return 2L * (name.length() + sql.length())
+				+ (parameters == null ? 0L : 16L * parameters.length);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return hashCode == other.hashCode && name.equals(other.name)
+				&& sql.equals(other.sql) && Arrays.deepEquals(parameters, other.parameters);
+		}
+	}
+
+	private static final class Entry {
+		final CachedResultSet.MetaData metaData;
+		final byte[] rows;
+		final int rowCount;
+		final long expires;
+		final long size;
+
+		Entry(final CachedResultSet.MetaData metaData, final byte[] rows, final int rowCount,
+				final long expires, final long size) {
+			this.metaData = metaData;
+			this.rows = rows;
+			this.rowCount = rowCount;
+			this.expires = expires;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Encodes rows as a query reads them. It gives up, dropping what it has, when
+	 * the rows grow past the largest entry size or hold a value that cannot be
+	 * cached.
+	 */
+	public static final class Writer {
+		private final CachedResultSet.MetaData metaData;
+		private final long maxBytes;
+		private ByteArrayOutputStream bytes;
+		private DataOutputStream out;
+		private int rowCount;
+		private boolean rejected;
+
+		Writer(final CachedResultSet.MetaData metaData, final long maxBytes) {
+			this.metaData = metaData;
+			this.maxBytes = maxBytes;
+			this.bytes = new ByteArrayOutputStream(1024);
+			this.out = new DataOutputStream(bytes);
+		}
+
+		/**
+		 * Copies the current row of {@code resultSet}.
+		 */
+		public void add(final ResultSet resultSet) {
+			if (out == null) {
+				return;
+			}
+			try {
+				if (CachedResultSet.writeRow(resultSet, metaData.getColumnCount(), out)
+					&& out.size() <= maxBytes) {
+					rowCount++;
+					return;
+				}
+			}
+			catch (final SQLException e) {
+				// Leave it to the caller's own read of the row to report.
+			}
+			catch (final IOException e) {
+				// Cannot happen writing to memory, short of a value that fails to
+				// serialize.
+			}
+			rejected = true;
+			abandon();
+		}
+
+		/**
+		 * Drops the rows, for instance because not all of them were read.
+		 */
+		public void abandon() {
+			bytes = null;
+			out = null;
+		}
+	}
+}
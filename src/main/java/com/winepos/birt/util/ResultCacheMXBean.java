@@ -0,0 +1,38 @@
+package com.winepos.birt.util;
+
+/**
+ * What a {@link ResultCache} exposes over JMX.
+ */
+public interface ResultCacheMXBean {
+	int getEntryCount();
+
+	long getBytes();
+
+	long getMaxBytes();
+
+	long getHits();
+
+	long getMisses();
+
+	/**
+	 * @return hits as a fraction of lookups, 0 before the first lookup
+	 */
+	double getHitRate();
+
+	long getEvictions();
+
+	long getExpirations();
+
+	/**
+	 * @return results not cached because they would have taken more than a
+	 *         quarter of the budget, or held values that cannot be cached
+	 */
+	long getRejections();
+
+	/**
+	 * Drops the cached results of the SQL resource or statement {@code name}.
+	 */
+	void invalidate(String name);
+
+	void invalidateAll();
+}
@@ -0,0 +1,15 @@
+package com.winepos.birt.util;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Receives the rows of a streaming query one at a time.
+ */
+public interface RowHandler {
+	/**
+	 * @param resultSet positioned on the current row; only valid during the call
+	 * @return false to stop reading further rows
+	 */
+	boolean handleRow(ResultSet resultSet) throws SQLException;
+}
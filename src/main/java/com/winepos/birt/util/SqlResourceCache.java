@@ -0,0 +1,130 @@
+package com.winepos.birt.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads each SQL resource once and keeps it as a parsed {@link SqlTemplate}.
+ * A resource is reloaded when its modification time or size changes; the file
+ * is checked at most once every {@code checkInterval} milliseconds.
+ */
+public class SqlResourceCache {
+	private final File resourcesDir;
+	private final long checkInterval;
+	private final ConcurrentMap<String, Entry> entries;
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+	private final AtomicLong reloads;
+	private final AtomicLong loadNanos;
+
+	public SqlResourceCache(final File resourcesDir, final long checkInterval) {
+		this.resourcesDir = resourcesDir;
+		this.checkInterval = checkInterval;
+		this.entries = new ConcurrentHashMap<String, Entry>();
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+		this.reloads = new AtomicLong();
+		this.loadNanos = new AtomicLong();
+	}
+
+	public SqlTemplate get(final String resourceName) throws IOException {
+		final Entry entry = entries.get(resourceName);
+		final long now = System.currentTimeMillis();
+		if (entry != null) {
+			if (now - entry.checked < checkInterval) {
+				hits.incrementAndGet();
+				return entry.template;
+			}
+			final File file = entry.file;
+			if (file.lastModified() == entry.lastModified && file.length() == entry.length) {
+				entry.checked = now;
+				hits.incrementAndGet();
+				return entry.template;
+			}
+			reloads.incrementAndGet();
+		}
+		misses.incrementAndGet();
+		final Entry loaded = load(resourceName, now);
+		entries.put(resourceName, loaded);
+		return loaded.template;
+	}
+
+	private Entry load(final String resourceName, final long now) throws IOException {
+		final long start = System.nanoTime();
+		final File file = new File(resourcesDir, resourceName);
+		final long lastModified = file.lastModified();
+		final long length = file.length();
+		if (lastModified == 0L && !file.exists()) {
+			throw new FileNotFoundException(file.getPath());
+		}
+		final SqlTemplate template = new SqlTemplate(DbInterface.fileToString(file));
+		loadNanos.addAndGet(System.nanoTime() - start);
+		return new Entry(file, lastModified, length, now, template);
+	}
+
+	public void invalidate(final String resourceName) {
+		entries.remove(resourceName);
+	}
+
+	public void invalidateAll() {
+		entries.clear();
+	}
+
+	public File getResourcesDir() {
+		return resourcesDir;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getReloads() {
+		return reloads.get();
+	}
+
+	public double getHitRate() {
+		final long hits = this.hits.get();
+		final long total = hits + misses.get();
+		return total == 0L ? 0.0 : (double) hits / total;
+	}
+
+	public long getTotalLoadNanos() {
+		return loadNanos.get();
+	}
+
+	public int getSize() {
+		return entries.size();
+	}
+
+	@Override
+	public String toString() {
+		return "SQL resources: " + entries.size() + ", hits: " + hits.get() + ", misses: "
+			+ misses.get() + ", reloads: " + reloads.get() + ", load time: "
+			+ loadNanos.get() / 1000000L + "ms";
+	}
+
+	private static final class Entry {
+		final File file;
+		final long lastModified;
+		final long length;
+		final SqlTemplate template;
+		volatile long checked;
+
+		Entry(final File file, final long lastModified, final long length, final long checked,
+				final SqlTemplate template) {
+			this.file = file;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.checked = checked;
+			this.template = template;
+		}
+	}
+}
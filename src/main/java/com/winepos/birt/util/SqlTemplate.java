@@ -0,0 +1,98 @@
+package com.winepos.birt.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQL text split once into literal text and {@code {key}} placeholders, see
+ * {@link DbInterface#getQueryReplacementKey(String)}, so that filling it in is
+ * a single pass over the pieces.
+ */
+public final class SqlTemplate {
+	private final String sql;
+	private final String[] literals;
+	private final String[] keys;
+
+	public SqlTemplate(final String sql) {
+		this.sql = sql;
+		final List<String> literals = new ArrayList<String>();
+		final List<String> keys = new ArrayList<String>();
+		final int length = sql.length();
+		int literalStart = 0;
+		int i = 0;
+		while (i < length) {
+			final int open = sql.indexOf('{', i);
+			if (open < 0) {
+				break;
+			}
+			final int close = findPlaceholderEnd(sql, open + 1);
+			if (close < 0) {
+				i = open + 1;
+				continue;
+			}
+			literals.add(sql.substring(literalStart, open));
+			keys.add(sql.substring(open + 1, close));
+			literalStart = close + 1;
+			i = literalStart;
+		}
+		literals.add(sql.substring(literalStart));
+		this.literals = literals.toArray(new String[literals.size()]);
+		this.keys = keys.toArray(new String[keys.size()]);
+	}
+
+	private static int findPlaceholderEnd(final String sql, final int start) {
+		for (int i = start; i < sql.length(); i++) {
+			final char c = sql.charAt(i);
+			if (c == '}') {
+				return i > start ? i : -1;
+			}
+			if (c == '{' || c == '\n' || c == '\r') {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public List<String> getKeys() {
+		final List<String> list = new ArrayList<String>(keys.length);
+		Collections.addAll(list, keys);
+		return list;
+	}
+
+	/**
+	 * Replaces each placeholder whose key is in {@code replacements} with the
+	 * string value of the replacement. Placeholders without a replacement are left
+	 * as they are.
+	 */
+	public String fill(final Map<String, ?> replacements) {
+		if (keys.length == 0 || replacements == null || replacements.isEmpty()) {
+			return sql;
+		}
+		final StringBuilder sb = new StringBuilder(sql.length() + 16 * keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			sb.append(literals[i]);
+			final Object value = replacements.get(keys[i]);
+			if (value == null && !replacements.containsKey(keys[i])) {
+				sb.append('{');
+				sb.append(keys[i]);
+				sb.append('}');
+			}
+			else {
+				sb.append(value);
+			}
+		}
+		sb.append(literals[keys.length]);
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return sql;
+	}
+}
@@ -0,0 +1,143 @@
+package com.winepos.birt.util;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * LRU cache of idle prepared statements for one physical connection. A
+ * statement is removed from the cache while it is in use and offered back
+ * when it is logically closed.
+ */
+public final class StatementCache {
+	private static final Logger LOGGER;
+	private final int maxSize;
+	private final LinkedHashMap<Key, PreparedStatement> statements;
+	private boolean closed;
+	static {
+		LOGGER = Logger.getLogger(StatementCache.class.getName());
+	}
+
+	public StatementCache(final int maxSize) {
+		this.maxSize = maxSize;
+		this.statements = new LinkedHashMap<Key, PreparedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Key, PreparedStatement> eldest) {
+				if (this.size() <= StatementCache.this.maxSize) {
+					return false;
+				}
+				StatementCache.close(eldest.getValue());
+				return true;
+			}
+		};
+		this.closed = false;
+	}
+
+	/**
+	 * Hits and misses are counted by the pool, across all of its connections.
+	 */
+	public synchronized PreparedStatement take(final Key key) {
+		return this.statements.remove(key);
+	}
+
+	/**
+	 * @return false if the statement was not cached, in which case the caller
+	 *         must close it
+	 */
+	public synchronized boolean offer(final Key key, final PreparedStatement statement) {
+		if (this.closed || this.maxSize <= 0 || this.statements.containsKey(key)) {
+			return false;
+		}
+		this.statements.put(key, statement);
+		return true;
+	}
+
+	public void close() {
+		final List<PreparedStatement> toClose;
+		synchronized (this) {
+			this.closed = true;
+			toClose = new ArrayList<PreparedStatement>(this.statements.values());
+			this.statements.clear();
+		}
+		for (final PreparedStatement statement : toClose) {
+			StatementCache.close(statement);
+		}
+	}
+
+	private static void close(final PreparedStatement statement) {
+		try {
+			statement.close();
+		}
+		catch (final SQLException e) {
+			StatementCache.LOGGER.log(Level.FINEST, "Unable to close cached statement", e);
+		}
+	}
+
+	public synchronized int getSize() {
+		return this.statements.size();
+	}
+
+	public int getMaxSize() {
+		return this.maxSize;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "statements: " + this.statements.size() + "/" + this.maxSize;
+	}
+
+	public static final class Key {
+		private final String sql;
+		private final int resultSetType;
+		private final int resultSetConcurrency;
+		private final int resultSetHoldability;
+		private final int hashCode;
+
+		/**
+		 * @param resultSetHoldability the holdability, or -1 for the driver default
+		 */
+		public Key(final String sql, final int resultSetType, final int resultSetConcurrency,
+				final int resultSetHoldability) {
+			this.sql = sql;
+			this.resultSetType = resultSetType;
+			this.resultSetConcurrency = resultSetConcurrency;
+			this.resultSetHoldability = resultSetHoldability;
+			int hashCode = sql.hashCode();
+			hashCode = 31 * hashCode + resultSetType;
+			hashCode = 31 * hashCode + resultSetConcurrency;
+			hashCode = 31 * hashCode + resultSetHoldability;
+			this.hashCode = hashCode;
+		}
+
+		public String getSql() {
+			return this.sql;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return this.hashCode == other.hashCode && this.resultSetType == other.resultSetType
+				&& this.resultSetConcurrency == other.resultSetConcurrency
+				&& this.resultSetHoldability == other.resultSetHoldability
+				&& this.sql.equals(other.sql);
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package com.winepos.birt.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Timing of the statements run through {@link DbInterface}, per SQL resource,
+ * split into getting the connection, preparing the statement and executing it.
+ * Statements slower than the threshold are logged along with their parameter
+ * count.
+ */
+public class StatementStats {
+	/**
+	 * Statements run from SQL text rather than a resource are keyed by their
+	 * text, so the number of keys is capped in case that text is never the same
+	 * twice.
+	 */
+	static final int MAX_NAMES = 1000;
+	static final String OTHER = "(other)";
+	private static final int MAX_NAME_LENGTH = 200;
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	private final ConcurrentMap<String, Timings> timings;
+	private final Logger logger;
+	private volatile long slowQueryThreshold;
+
+	/**
+	 * @param slowQueryThreshold milliseconds after which a statement is logged as
+	 *            slow, 0 to log none
+	 */
+	public StatementStats(final Logger logger, final long slowQueryThreshold) {
+		this.timings = new ConcurrentHashMap<String, Timings>();
+		this.logger = logger;
+		this.slowQueryThreshold = slowQueryThreshold;
+	}
+
+	public long getSlowQueryThreshold() {
+		return slowQueryThreshold;
+	}
+
+	public void setSlowQueryThreshold(final long slowQueryThreshold) {
+		this.slowQueryThreshold = slowQueryThreshold;
+	}
+
+	public Timer start(final String name, final Object[] parameters) {
+		return new Timer(name, parameters == null ? 0 : parameters.length);
+	}
+
+	void record(final Timer timer) {
+		final Timings timings = getTimings(timer.name);
+		final long checkout = timer.checkedOut - timer.start;
+		final long prepare = timer.prepared - timer.checkedOut;
+		final long execute = timer.finished - timer.prepared;
+		timings.checkout.record(checkout);
+		timings.prepare.record(prepare);
+		timings.execute.record(execute);
+		if (!timer.succeeded) {
+			timings.errors.increment();
+		}
+		final long threshold = slowQueryThreshold;
+		final long total = timer.finished - timer.start;
+		if (threshold > 0L && total >= threshold * 1000000L) {
+			logger.log(String.format("Slow query: %s took %dms (checkout %dms, prepare %dms,"
+				+ " execute %dms), %d parameters%s", timer.name, total / 1000000L,
+				checkout / 1000000L, prepare / 1000000L, execute / 1000000L,
+				timer.parameterCount, timer.succeeded ? "" : ", failed"));
+		}
+	}
+
+	private Timings getTimings(final String name) {
+		Timings timings = this.timings.get(name);
+		if (timings == null) {
+			final String key = this.timings.size() < MAX_NAMES ? name : OTHER;
+			timings = this.timings.get(key);
+			if (timings == null) {
+				final Timings newTimings = new Timings();
+				timings = this.timings.putIfAbsent(key, newTimings);
+				if (timings == null) {
+					timings = newTimings;
+				}
+			}
+		}
+		return timings;
+	}
+
+	/**
+	 * @return the timings so far, sorted by name
+	 */
+	public Map<String, Snapshot> getSnapshot() {
+		final Map<String, Snapshot> snapshot = new TreeMap<String, Snapshot>();
+		for (final Map.Entry<String, Timings> entry : timings.entrySet()) {
+			snapshot.put(entry.getKey(), new Snapshot(entry.getKey(), entry.getValue()));
+		}
+		return Collections.unmodifiableMap(snapshot);
+	}
+
+	public void reset() {
+		timings.clear();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		for (final Snapshot snapshot : getSnapshot().values()) {
+			sb.append(snapshot);
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return the name that timings and cached results of an ad hoc query are
+	 *         kept under: its SQL with whitespace collapsed
+	 */
+	public static String getName(final String sql) {
+		final String name = WHITESPACE.matcher(sql).replaceAll(" ").trim();
+		return name.length() > MAX_NAME_LENGTH ? name.substring(0, MAX_NAME_LENGTH) + "..."
+			: name;
+	}
+
+	private static final class Timings {
+		final LatencyHistogram checkout = new LatencyHistogram();
+		final LatencyHistogram prepare = new LatencyHistogram();
+		final LatencyHistogram execute = new LatencyHistogram();
+		final LongAdder errors = new LongAdder();
+	}
+
+	/**
+	 * Times one statement. Call {@link #checkedOut()} once the connection is in
+	 * hand, {@link #prepared()} once the statement is, {@link #succeeded()} if it
+	 * ran, and {@link #finish()} in a finally block.
+	 */
+	public final class Timer {
+		private final String name;
+		private final int parameterCount;
+		private final long start;
+		private long checkedOut;
+		private boolean isCheckedOut;
+		private long prepared;
+		private boolean isPrepared;
+		private long finished;
+		private boolean succeeded;
+
+		Timer(final String name, final int parameterCount) {
+			this.name = name;
+			this.parameterCount = parameterCount;
+			this.start = System.nanoTime();
+		}
+
+		public void checkedOut() {
+			checkedOut = System.nanoTime();
+			isCheckedOut = true;
+		}
+
+		public void prepared() {
+			prepared = System.nanoTime();
+			isPrepared = true;
+		}
+
+		public void succeeded() {
+			succeeded = true;
+		}
+
+		public void finish() {
+			finished = System.nanoTime();
+			if (!isCheckedOut) {
+				// Failed to get a connection.
+				checkedOut = finished;
+			}
+			if (!isPrepared) {
+				// Failed while preparing.
+				prepared = finished;
+			}
+			record(this);
+		}
+	}
+
+	public static final class Snapshot {
+		private final String name;
+		private final long errors;
+		private final LatencyHistogram.Snapshot checkout;
+		private final LatencyHistogram.Snapshot prepare;
+		private final LatencyHistogram.Snapshot execute;
+
+		Snapshot(final String name, final Timings timings) {
+			this.name = name;
+			this.errors = timings.errors.sum();
+			this.checkout = timings.checkout.getSnapshot();
+			this.prepare = timings.prepare.getSnapshot();
+			this.execute = timings.execute.getSnapshot();
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getCount() {
+			return execute.getCount();
+		}
+
+		public long getErrors() {
+			return errors;
+		}
+
+		public LatencyHistogram.Snapshot getCheckout() {
+			return checkout;
+		}
+
+		public LatencyHistogram.Snapshot getPrepare() {
+			return prepare;
+		}
+
+		public LatencyHistogram.Snapshot getExecute() {
+			return execute;
+		}
+
+		@Override
+		public String toString() {
+			return name + ": " + getCount() + " runs, " + errors + " errors\n  checkout: "
+				+ checkout + "\n  prepare: " + prepare + "\n  execute: " + execute;
+		}
+	}
+}
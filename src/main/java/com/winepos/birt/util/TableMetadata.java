@@ -0,0 +1,79 @@
+package com.winepos.birt.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The columns of a table, and a fingerprint of their names and types that
+ * changes whenever the table's shape does.
+ */
+public final class TableMetadata {
+	private final String tableName;
+	private final List<ColumnInfo> columns;
+	private final String fingerprint;
+	private final long timestamp;
+
+	public TableMetadata(final String tableName, final List<ColumnInfo> columns) {
+		this.tableName = tableName;
+		this.columns = Collections.unmodifiableList(new ArrayList<ColumnInfo>(columns));
+		this.fingerprint = fingerprint(columns);
+		this.timestamp = System.currentTimeMillis();
+	}
+
+	private static String fingerprint(final List<ColumnInfo> columns) {
+		final StringBuilder sb = new StringBuilder();
+		for (final ColumnInfo column : columns) {
+			sb.append(column.getName());
+			sb.append('\t');
+			sb.append(column.getJdbcType());
+			sb.append('\t');
+			sb.append(column.getTypeName());
+			sb.append('\n');
+		}
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			final byte[] hash = digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+			final StringBuilder hex = new StringBuilder(hash.length * 2);
+			for (final byte b : hash) {
+				hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+				hex.append(Character.forDigit(b & 0xf, 16));
+			}
+			return hex.toString();
+		}
+		catch (final NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public String getTableName() {
+		return tableName;
+	}
+
+	public List<ColumnInfo> getColumns() {
+		return columns;
+	}
+
+	public int getColumnCount() {
+		return columns.size();
+	}
+
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * @return when the table was probed
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return tableName + " " + columns + " " + fingerprint;
+	}
+}
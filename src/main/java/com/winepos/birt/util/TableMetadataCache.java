@@ -0,0 +1,68 @@
+package com.winepos.birt.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Probed table metadata, kept for {@code ttl} milliseconds. Callers compare
+ * {@link TableMetadata#getFingerprint()} to tell whether a table changed
+ * shape between probes.
+ */
+public class TableMetadataCache {
+	private final long ttl;
+	private final ConcurrentMap<String, TableMetadata> entries;
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+
+	/**
+	 * @param ttl milliseconds to keep an entry, 0 to disable caching
+	 */
+	public TableMetadataCache(final long ttl) {
+		this.ttl = ttl;
+		this.entries = new ConcurrentHashMap<String, TableMetadata>();
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+	}
+
+	/**
+	 * @return the cached metadata, or null if there is none or it has expired
+	 */
+	public TableMetadata get(final String tableName) {
+		final TableMetadata metadata = entries.get(tableName);
+		if (metadata == null || System.currentTimeMillis() - metadata.getTimestamp() >= ttl) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return metadata;
+	}
+
+	public void put(final TableMetadata metadata) {
+		if (ttl > 0L) {
+			entries.put(metadata.getTableName(), metadata);
+		}
+	}
+
+	public void invalidate(final String tableName) {
+		entries.remove(tableName);
+	}
+
+	public void invalidateAll() {
+		entries.clear();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	@Override
+	public String toString() {
+		return "tables: " + entries.size() + ", hits: " + hits.get() + ", misses: "
+			+ misses.get();
+	}
+}
@@ -0,0 +1,121 @@
+package com.winepos.birt.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Properties;
+
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+public class ConfigurationWatcherTest extends TestCase {
+	private File dir;
+	private File file;
+	private Properties properties;
+	private ConfigurationWatcher watcher;
+
+	@Override
+	protected void setUp() throws Exception {
+		FlakyDriver.register();
+		dir = File.createTempFile("ConfigurationWatcherTest", "");
+		dir.delete();
+		dir.mkdir();
+		file = new File(dir, "report-support.properties");
+		properties = new Properties();
+		properties.setProperty("db.driver", "org.h2.Driver");
+		properties.setProperty("db.url", FlakyDriver.PREFIX + getName());
+		properties.setProperty("db.username", "sa");
+		properties.setProperty("db.password", "");
+		properties.setProperty("db.pool.jmxName", getName());
+		properties.setProperty("resources", dir.getPath());
+		write();
+		watcher = new ConfigurationWatcher(file.getPath());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		watcher.get().getPool().shutdown();
+		FlakyDriver.deregister();
+		file.delete();
+		dir.delete();
+	}
+
+	private void write() throws Exception {
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			properties.store(out, null);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private int countSessions() throws Exception {
+		final Connection connection = watcher.get().getPool()
+				.getConnection(Connection.TRANSACTION_READ_COMMITTED, false, true);
+		try {
+			final Statement statement = connection.createStatement();
+			final ResultSet resultSet = statement
+					.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.SESSIONS");
+			resultSet.next();
+			return resultSet.getInt(1);
+		}
+		finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * A reload that fails after its pool was opened must close that pool and
+	 * give the MBean name back to the current one.
+	 */
+	public void testFailedReloadKeepsCurrentPool() throws Exception {
+		final Configuration current = watcher.get();
+		final int sessions = countSessions();
+		properties.setProperty("db.pool.minIdle", "2");
+		properties.setProperty("metadata.cache.ttl", "soon");
+		write();
+		assertFalse(watcher.reload());
+		assertSame(current, watcher.get());
+		assertEquals(sessions, countSessions());
+		assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(
+			"com.winepos.birt.util:type=DbConnectionPool,name=" + ObjectName.quote(getName()))));
+	}
+
+	public void testReloadReplacesPool() throws Exception {
+		final DbConnectionPool pool = watcher.get().getPool();
+		properties.setProperty("db.pool.maxSize", "8");
+		write();
+		assertTrue(watcher.reload());
+		assertNotSame(pool, watcher.get().getPool());
+		assertEquals(8, watcher.get().getPool().getMaxSize());
+	}
+
+	public void testMalformedReloadSettingKeepsCurrentConfiguration() throws Exception {
+		final Configuration current = watcher.get();
+		properties.setProperty("db.pool.maxSize", "8");
+		properties.setProperty("config.reload.drainTimeout", "soon");
+		write();
+		assertFalse(watcher.reload());
+		assertSame(current, watcher.get());
+		assertFalse(current.getPool().isDraining());
+	}
+
+	public void testReloadKeepsStatementStats() throws Exception {
+		final StatementStats stats = watcher.get().getStatementStats();
+		properties.setProperty("sql.cache.checkInterval", "2000");
+		write();
+		assertTrue(watcher.reload());
+		assertSame(stats, watcher.get().getStatementStats());
+		properties.setProperty("db.slowQueryThreshold", "50");
+		write();
+		assertTrue(watcher.reload());
+		assertNotSame(stats, watcher.get().getStatementStats());
+		assertEquals(50L, watcher.get().getStatementStats().getSlowQueryThreshold());
+	}
+}
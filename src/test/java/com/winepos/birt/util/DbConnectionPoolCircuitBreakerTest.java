@@ -0,0 +1,148 @@
+package com.winepos.birt.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class DbConnectionPoolCircuitBreakerTest extends TestCase {
+	private static final long RESET_TIMEOUT = 200L;
+	private DbConnectionPool pool;
+
+	@Override
+	protected void setUp() throws Exception {
+		FlakyDriver.register();
+		pool = new DbConnectionPool("org.h2.Driver", FlakyDriver.PREFIX + getName(), "sa", "",
+				10, 0, 500L);
+		pool.setConnectRetries(0);
+		pool.setCircuitBreakerThreshold(3);
+		pool.setCircuitBreakerResetTimeout(RESET_TIMEOUT);
+		// Make every checkout connect.
+		pool.clear();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		pool.shutdown();
+		FlakyDriver.deregister();
+	}
+
+	private void failConnects(final int count) {
+		for (int i = 0; i < count; i++) {
+			try {
+				pool.getConnection(8, false, true).close();
+				fail("Connected while the database was down");
+			}
+			catch (final CircuitOpenException e) {
+				fail("Circuit opened after " + i + " failures");
+			}
+			catch (final SQLException e) {
+				// Expected.
+			}
+		}
+	}
+
+	private void assertRejected() {
+		final int attempts = FlakyDriver.attempts.get();
+		try {
+			pool.getConnection(8, false, true).close();
+			fail("Connected while the circuit was open");
+		}
+		catch (final CircuitOpenException e) {
+			assertEquals("the driver was not called", attempts, FlakyDriver.attempts.get());
+		}
+		catch (final SQLException e) {
+			fail("Tried to connect while the circuit was open: " + e);
+		}
+	}
+
+	public void testOpensAfterThreshold() {
+		FlakyDriver.up = false;
+		failConnects(3);
+		assertTrue(pool.isCircuitOpen());
+		assertRejected();
+		assertEquals(1L, pool.getMetrics().getCircuitRejections());
+	}
+
+	public void testProbeClosesCircuit() throws Exception {
+		FlakyDriver.up = false;
+		failConnects(3);
+		Thread.sleep(RESET_TIMEOUT + 50L);
+		FlakyDriver.up = true;
+		pool.getConnection(8, false, true).close();
+		assertFalse(pool.isCircuitOpen());
+	}
+
+	public void testFailedProbeReopensCircuit() throws Exception {
+		FlakyDriver.up = false;
+		failConnects(3);
+		Thread.sleep(RESET_TIMEOUT + 50L);
+		// A single failure is enough when probing.
+		failConnects(1);
+		assertTrue(pool.isCircuitOpen());
+		assertRejected();
+	}
+
+	/**
+	 * A probe that never got to connect, because it timed out waiting for a
+	 * creation permit, must let a later caller probe.
+	 */
+	public void testProbeWithoutPermitLetsNextCallerProbe() throws Exception {
+		pool.setMaxConcurrentCreations(1);
+		pool.setCircuitBreakerThreshold(1);
+		final CountDownLatch failerEntered = new CountDownLatch(1);
+		final CountDownLatch failerGate = new CountDownLatch(1);
+		final CountDownLatch holderEntered = new CountDownLatch(1);
+		final CountDownLatch holderGate = new CountDownLatch(1);
+		// Opens the circuit once released.
+		final Thread failer = connectInBackground(failerEntered, failerGate);
+		assertTrue(failerEntered.await(5L, TimeUnit.SECONDS));
+		// Passes the closed circuit and then waits for the failer's permit.
+		final Thread holder = connectInBackground(holderEntered, holderGate);
+		Thread.sleep(200L);
+		FlakyDriver.up = false;
+		failerGate.countDown();
+		failer.join(5000L);
+		assertTrue(holderEntered.await(5L, TimeUnit.SECONDS));
+		assertTrue(pool.isCircuitOpen());
+		Thread.sleep(RESET_TIMEOUT + 50L);
+		for (int i = 0; i < 2; i++) {
+			try {
+				pool.getConnection(8, false, true).close();
+				fail("Got a permit the holder has");
+			}
+			catch (final CircuitOpenException e) {
+				fail("Probe " + i + " was rejected: " + e.getMessage());
+			}
+			catch (final SQLException e) {
+				// Timed out waiting for the holder's permit.
+			}
+		}
+		FlakyDriver.up = true;
+		holderGate.countDown();
+		holder.join(5000L);
+		assertFalse(pool.isCircuitOpen());
+	}
+
+	private Thread connectInBackground(final CountDownLatch entered,
+			final CountDownLatch gate) {
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				FlakyDriver.entered.set(entered);
+				FlakyDriver.gate.set(gate);
+				try {
+					final Connection connection = pool.getConnection(8, false, true);
+					connection.close();
+				}
+				catch (final SQLException e) {
+					// Expected for the failer.
+				}
+			}
+		});
+		thread.start();
+		return thread;
+	}
+}
@@ -0,0 +1,414 @@
+package com.winepos.birt.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class DbConnectionPoolTest extends TestCase {
+	private DbConnectionPool pool;
+
+	@Override
+	protected void setUp() throws Exception {
+		FlakyDriver.register();
+		pool = new DbConnectionPool("org.h2.Driver", FlakyDriver.PREFIX + getName(), "sa", "",
+				4, 0, 500L);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		pool.shutdown();
+		FlakyDriver.deregister();
+	}
+
+	private DbConnectionPool.PooledConnection checkout() throws SQLException {
+		return pool.getConnection(Connection.TRANSACTION_READ_COMMITTED, false, true);
+	}
+
+	private static Object queryValue(final Connection connection, final String sql)
+			throws SQLException {
+		final Statement statement = connection.createStatement();
+		try {
+			final ResultSet resultSet = statement.executeQuery(sql);
+			resultSet.next();
+			return resultSet.getObject(1);
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	private void assertCounts(final int open, final int pooled, final int total) {
+		assertEquals("open", open, pool.getOpenConnectionCount());
+		assertEquals("pooled", pooled, pool.getPooledConnectionCount());
+		assertEquals("total", total, pool.getTotalConnectionCount());
+	}
+
+	public void testReturnedConnectionsAreReused() throws Exception {
+		final Connection first = checkout();
+		final Connection second = checkout();
+		assertCounts(2, 0, 2);
+		first.close();
+		assertCounts(1, 1, 2);
+		final int attempts = FlakyDriver.attempts.get();
+		final Connection third = checkout();
+		assertEquals("reused", attempts, FlakyDriver.attempts.get());
+		assertCounts(2, 0, 2);
+		second.close();
+		third.close();
+		assertCounts(0, 2, 2);
+	}
+
+	public void testAcquireTimesOutWhenFull() throws Exception {
+		final Connection[] connections = new Connection[4];
+		for (int i = 0; i < connections.length; i++) {
+			connections[i] = checkout();
+		}
+		assertCounts(4, 0, 4);
+		final long start = System.currentTimeMillis();
+		try {
+			checkout();
+			fail("Checked out of a full pool");
+		}
+		catch (final SQLTransientConnectionException e) {
+			assertTrue(System.currentTimeMillis() - start >= 450L);
+		}
+		assertEquals(1L, pool.getMetrics().getAcquireTimeouts());
+		connections[0].close();
+		connections[0] = checkout();
+		assertCounts(4, 0, 4);
+		for (final Connection connection : connections) {
+			connection.close();
+		}
+	}
+
+	/**
+	 * More failed connects than the pool has slots: each gives back its slot and
+	 * permit, or the pool would end up refusing checkouts.
+	 */
+	public void testFailedConnectsGiveBackSlots() throws Exception {
+		pool.setConnectRetries(0);
+		pool.setCircuitBreakerThreshold(0);
+		pool.clear();
+		FlakyDriver.up = false;
+		for (int i = 0; i < 6; i++) {
+			try {
+				checkout();
+				fail("Connected while the database was down");
+			}
+			catch (final SQLTransientConnectionException e) {
+				fail("Ran out of permits after " + i + " failures");
+			}
+			catch (final SQLException e) {
+				// Expected.
+			}
+		}
+		assertCounts(0, 0, 0);
+		FlakyDriver.up = true;
+		final Connection[] connections = new Connection[4];
+		for (int i = 0; i < connections.length; i++) {
+			connections[i] = checkout();
+		}
+		assertCounts(4, 0, 4);
+		for (final Connection connection : connections) {
+			connection.close();
+		}
+	}
+
+	public void testLeakDetection() throws Exception {
+		pool.setLeakDetectionThreshold(100L);
+		pool.setLeakDetectionSampleRate(1.0);
+		final DbConnectionPool.PooledConnection held = checkout();
+		assertEquals("not yet", 0, pool.detectLeaks());
+		Thread.sleep(150L);
+		assertEquals(1, pool.detectLeaks());
+		assertEquals("reported once", 0, pool.detectLeaks());
+		assertEquals(1L, pool.getMetrics().getLeaksDetected());
+		assertTrue(pool.getOpenConnectionInfo(held.getIndex()).hasStackTrace());
+		held.close();
+		pool.setLeakDetectionSampleRate(0.0);
+		final DbConnectionPool.PooledConnection unsampled = checkout();
+		Thread.sleep(150L);
+		assertEquals("detected without a stack trace", 1, pool.detectLeaks());
+		assertFalse(pool.getOpenConnectionInfo(unsampled.getIndex()).hasStackTrace());
+		unsampled.close();
+		pool.setLeakDetectionThreshold(0L);
+		assertEquals(0, pool.detectLeaks());
+	}
+
+	/**
+	 * The housekeeper, rather than checkout, evicts idle connections that timed
+	 * out, then opens new ones up to minIdle.
+	 */
+	public void testHousekeeperEvictsTimedOutConnections() throws Exception {
+		final DbConnectionPool pool = new DbConnectionPool("org.h2.Driver",
+				FlakyDriver.PREFIX + getName() + "1", "sa", "", 4, 1, 500L);
+		try {
+			pool.setTimeout(200L);
+			final Connection[] connections = new Connection[3];
+			for (int i = 0; i < connections.length; i++) {
+				connections[i] = pool.getConnection(Connection.TRANSACTION_READ_COMMITTED,
+					false, true);
+			}
+			for (final Connection connection : connections) {
+				connection.close();
+			}
+			assertEquals(3, pool.getPooledConnectionCount());
+			pool.startHousekeeper(50L);
+			final long deadline = System.currentTimeMillis() + 5000L;
+			while (pool.getMetrics().getTimeoutEvictions() < 3L
+				&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(20L);
+			}
+			assertEquals(3L, pool.getMetrics().getTimeoutEvictions());
+			while (pool.getPooledConnectionCount() < 1 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20L);
+			}
+			assertEquals("topped up to minIdle", 1, pool.getPooledConnectionCount());
+			assertEquals(1, pool.getTotalConnectionCount());
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	public void testHousekeeperDiscardsInvalidConnections() throws Exception {
+		final Connection idle = checkout();
+		final Connection other = checkout();
+		final Object sessionId = queryValue(idle, "select session_id()");
+		idle.close();
+		queryValue(other, "call abort_session(" + sessionId + ")");
+		other.close();
+		assertCounts(0, 2, 2);
+		pool.setValidationInterval(1L);
+		Thread.sleep(5L);
+		pool.housekeep();
+		assertEquals(1L, pool.getMetrics().getInvalidEvictions());
+		assertCounts(0, 1, 1);
+		final Connection valid = checkout();
+		assertEquals(Integer.valueOf(1), queryValue(valid, "select 1"));
+		valid.close();
+	}
+
+	public void testDrainRefusesCheckoutsAndWaitsForBorrowers() throws Exception {
+		final Connection borrowed = checkout();
+		final Thread giveBack = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(300L);
+					borrowed.close();
+				}
+				catch (final Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		giveBack.start();
+		final long start = System.currentTimeMillis();
+		assertTrue(pool.drain(5000L));
+		assertTrue("waited for the borrower", System.currentTimeMillis() - start >= 250L);
+		assertEquals(0, pool.getOpenConnectionCount());
+		assertEquals(0, pool.getPooledConnectionCount());
+		assertEquals(0, pool.getTotalConnectionCount());
+		try {
+			checkout();
+			fail("Checked out of a drained pool");
+		}
+		catch (final SQLNonTransientConnectionException e) {
+			// Expected.
+		}
+	}
+
+	public void testDrainTimesOut() throws Exception {
+		final Connection borrowed = checkout();
+		assertFalse(pool.drain(200L));
+		assertEquals(1, pool.getOpenConnectionCount());
+		borrowed.close();
+		// Closed rather than pooled.
+		assertEquals(0, pool.getPooledConnectionCount());
+		assertEquals(0, pool.getTotalConnectionCount());
+	}
+
+	/**
+	 * A checkout that holds a permit but finds the only slot taken by a
+	 * connection the pool is still opening waits for that connection.
+	 */
+	public void testCheckoutWaitsForConnectionBeingOpened() throws Exception {
+		final DbConnectionPool pool = new DbConnectionPool("org.h2.Driver",
+				FlakyDriver.PREFIX + getName() + "1", "sa", "", 1, 1, 5000L);
+		try {
+			pool.clear();
+			final CountDownLatch entered = new CountDownLatch(1);
+			final CountDownLatch gate = new CountDownLatch(1);
+			final Thread opener = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					FlakyDriver.entered.set(entered);
+					FlakyDriver.gate.set(gate);
+					try {
+						pool.ensureMinIdle();
+					}
+					catch (final SQLException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+			opener.start();
+			assertTrue(entered.await(5L, TimeUnit.SECONDS));
+			final int attempts = FlakyDriver.attempts.get();
+			final Thread release = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(200L);
+					}
+					catch (final InterruptedException e) {
+						return;
+					}
+					gate.countDown();
+				}
+			});
+			release.start();
+			final Connection connection = pool.getConnection(
+				Connection.TRANSACTION_READ_COMMITTED, false, true);
+			assertEquals("the opened connection was handed over", attempts,
+				FlakyDriver.attempts.get());
+			assertEquals(1, pool.getTotalConnectionCount());
+			connection.close();
+			opener.join(5000L);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Connection that records the names of the setters called on it.
+	 */
+	private static Connection recording(final Connection connection, final List<String> calls) {
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+			new Class<?>[] { Connection.class }, new InvocationHandler() {
+				@Override
+				public Object invoke(final Object proxy, final Method method,
+						final Object[] args) throws Throwable {
+					if (method.getName().startsWith("set")) {
+						calls.add(method.getName());
+					}
+					try {
+						return method.invoke(connection, args);
+					}
+					catch (final InvocationTargetException e) {
+						throw e.getCause();
+					}
+				}
+			});
+	}
+
+	public void testSessionStateSkipsUnchangedSettings() throws Exception {
+		final Connection h2 = DriverManager.getConnection("jdbc:h2:mem:" + getName()
+			+ ";DB_CLOSE_DELAY=-1", "sa", "");
+		try {
+			final List<String> calls = new ArrayList<String>();
+			final DbConnectionPool.PooledConnection connection = pool.new PooledConnection(
+					recording(h2, calls), 0L);
+			connection.applySessionState(Connection.TRANSACTION_READ_COMMITTED, false, true);
+			assertEquals(Arrays.asList("setTransactionIsolation"), calls);
+			calls.clear();
+			connection.applySessionState(Connection.TRANSACTION_READ_COMMITTED, false, true);
+			assertEquals(Collections.emptyList(), calls);
+			connection.applySessionState(Connection.TRANSACTION_READ_COMMITTED, true, false);
+			assertEquals(Arrays.asList("setReadOnly", "setAutoCommit"), calls);
+			calls.clear();
+			connection.setSchema(connection.getSchema());
+			assertEquals(Collections.emptyList(), calls);
+			assertTrue(connection.resetSessionState());
+			assertEquals(Arrays.asList("setAutoCommit"), calls);
+			assertTrue(h2.getAutoCommit());
+		}
+		finally {
+			h2.close();
+		}
+	}
+
+	/**
+	 * A borrower's schema and manual commit mode do not leak to the next
+	 * borrower of the connection; pending work is committed.
+	 */
+	public void testReturnedConnectionSessionStateIsReset() throws Exception {
+		final DbConnectionPool.PooledConnection connection = checkout();
+		final String schema = connection.getSchema();
+		final Statement statement = connection.createStatement();
+		try {
+			statement.execute("create schema other");
+			statement.execute("create table t (i int)");
+		}
+		finally {
+			statement.close();
+		}
+		connection.setSchema("OTHER");
+		connection.setAutoCommit(false);
+		final Statement insert = connection.createStatement();
+		try {
+			insert.execute("insert into " + schema + ".t values (1)");
+		}
+		finally {
+			insert.close();
+		}
+		connection.close();
+		final DbConnectionPool.PooledConnection reused = checkout();
+		assertSame(connection, reused);
+		assertEquals(schema, reused.getSchema());
+		assertEquals(schema, queryValue(reused, "select current_schema"));
+		assertTrue(reused.getAutoCommit());
+		final Connection other = checkout();
+		assertEquals("committed", Long.valueOf(1L), queryValue(other, "select count(*) from t"));
+		other.close();
+		reused.close();
+	}
+
+	/**
+	 * Connections that fail to open during warm-up are counted, give back
+	 * their slots and are opened later by the housekeeper.
+	 */
+	public void testWarmUpFailuresAreLeftForHousekeeper() throws Exception {
+		final DbConnectionPool pool = new DbConnectionPool("org.h2.Driver",
+				FlakyDriver.PREFIX + getName() + "1", "sa", "", 4, 3, 500L);
+		try {
+			assertEquals(0, pool.getWarmUpFailures());
+			assertEquals(3, pool.getPooledConnectionCount());
+			pool.setConnectRetries(0);
+			pool.setCircuitBreakerThreshold(0);
+			pool.clear();
+			FlakyDriver.up = false;
+			assertEquals(3, pool.warmUp());
+			assertEquals(3, pool.getWarmUpFailures());
+			assertEquals(0, pool.getPooledConnectionCount());
+			assertEquals("slots given back", 0, pool.getTotalConnectionCount());
+			FlakyDriver.up = true;
+			pool.housekeep();
+			assertEquals(3, pool.getPooledConnectionCount());
+			assertEquals(3, pool.getTotalConnectionCount());
+			assertEquals(0, pool.warmUp());
+			assertEquals(0, pool.getWarmUpFailures());
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.winepos.birt.util;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+public class DbInterfaceTest extends TestCase {
+	private Properties properties;
+	private Configuration configuration;
+
+	@Override
+	protected void setUp() throws Exception {
+		FlakyDriver.register();
+		properties = new Properties();
+		properties.setProperty("db.driver", "org.h2.Driver");
+		properties.setProperty("db.url", FlakyDriver.PREFIX + getName());
+		properties.setProperty("db.username", "sa");
+		properties.setProperty("db.password", "");
+		properties.setProperty("db.pool.jmxName", getName());
+		properties.setProperty("resources", new File(".").getAbsolutePath());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (configuration != null && configuration.getPool() != null) {
+			configuration.getPool().shutdown();
+		}
+		FlakyDriver.deregister();
+	}
+
+	/**
+	 * No JNDI provider is configured in tests, so every lookup fails.
+	 */
+	public void testJndiFallsBackToPool() throws Exception {
+		properties.setProperty("db.jndi", "java:comp/env/jdbc/" + getName());
+		properties.setProperty("db.jndi.retries", "0");
+		configuration = Configuration.load(properties, null);
+		assertNotNull(configuration.getJndiName());
+		final Connection connection = new DbInterface(configuration).getConnection();
+		assertEquals(1, configuration.getPool().getOpenConnectionCount());
+		connection.close();
+	}
+
+	public void testJndiWithoutFallback() throws Exception {
+		properties.setProperty("db.jndi", "java:comp/env/jdbc/" + getName());
+		properties.setProperty("db.jndi.retries", "0");
+		properties.setProperty("db.jndi.fallback", "false");
+		configuration = Configuration.load(properties, null);
+		assertNull(configuration.getPool());
+		try {
+			new DbInterface(configuration).getConnection().close();
+			fail("Connected without JNDI or fallback");
+		}
+		catch (final SQLException e) {
+			// Expected.
+		}
+	}
+
+	public void testFailedCheckoutIsRecorded() throws Exception {
+		properties.setProperty("db.pool.connectRetries", "0");
+		configuration = Configuration.load(properties, null);
+		configuration.getPool().clear();
+		FlakyDriver.up = false;
+		final String query = "insert into missing values (1)";
+		try {
+			new DbInterface(configuration).executeBatch(query,
+				Collections.singletonList(new Object[0]));
+			fail("Connected while the database was down");
+		}
+		catch (final SQLException e) {
+			// Expected.
+		}
+		final StatementStats.Snapshot snapshot = configuration.getStatementStats().getSnapshot()
+				.get(StatementStats.getName(query));
+		assertEquals(1L, snapshot.getCount());
+		assertEquals(1L, snapshot.getErrors());
+	}
+}
@@ -0,0 +1,114 @@
+package com.winepos.birt.util;
+
+import java.net.ConnectException;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Driver for {@code jdbc:flaky:<name>} URLs that hands out H2 in-memory
+ * connections, or fails as if the server were unreachable while {@link #up} is
+ * false. A thread can hold its next connect at {@link #gate} to control the
+ * order in which concurrent connects finish.
+ */
+final class FlakyDriver implements Driver {
+	static final String PREFIX = "jdbc:flaky:";
+	private static final FlakyDriver INSTANCE = new FlakyDriver();
+	static volatile boolean up = true;
+	/**
+	 * Names of databases that fail even while {@link #up} is true.
+	 */
+	static final Set<String> down = Collections.newSetFromMap(
+		new ConcurrentHashMap<String, Boolean>());
+	static final AtomicInteger attempts = new AtomicInteger();
+	/**
+	 * Counted down when the thread's connect reaches the driver.
+	 */
+	static final ThreadLocal<CountDownLatch> entered = new ThreadLocal<CountDownLatch>();
+	/**
+	 * Awaited before the thread's connect succeeds or fails.
+	 */
+	static final ThreadLocal<CountDownLatch> gate = new ThreadLocal<CountDownLatch>();
+
+	private FlakyDriver() {
+	}
+
+	static void register() throws SQLException {
+		up = true;
+		down.clear();
+		attempts.set(0);
+		DriverManager.registerDriver(INSTANCE);
+	}
+
+	static void deregister() throws SQLException {
+		DriverManager.deregisterDriver(INSTANCE);
+	}
+
+	@Override
+	public Connection connect(final String url, final Properties info) throws SQLException {
+		if (!acceptsURL(url)) {
+			return null;
+		}
+		attempts.incrementAndGet();
+		final CountDownLatch entered = FlakyDriver.entered.get();
+		if (entered != null) {
+			entered.countDown();
+		}
+		final CountDownLatch gate = FlakyDriver.gate.get();
+		if (gate != null) {
+			try {
+				gate.await();
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException(e);
+			}
+		}
+		final String name = url.substring(PREFIX.length());
+		if (!up || down.contains(name)) {
+			throw new SQLException("Connection refused", new ConnectException("refused"));
+		}
+		return DriverManager.getConnection("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa",
+			"");
+	}
+
+	@Override
+	public boolean acceptsURL(final String url) {
+		return url != null && url.startsWith(PREFIX);
+	}
+
+	@Override
+	public DriverPropertyInfo[] getPropertyInfo(final String url, final Properties info) {
+		return new DriverPropertyInfo[0];
+	}
+
+	@Override
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	@Override
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	@Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+}
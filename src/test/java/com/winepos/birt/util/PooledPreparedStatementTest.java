@@ -0,0 +1,114 @@
+package com.winepos.birt.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLFeatureNotSupportedException;
+
+import junit.framework.TestCase;
+
+public class PooledPreparedStatementTest extends TestCase {
+	private static final String SQL = "select 1";
+	private Connection connection;
+	private StatementCache cache;
+	private StatementCache.Key key;
+
+	@Override
+	protected void setUp() throws Exception {
+		connection = DriverManager.getConnection("jdbc:h2:mem:" + getName(), "sa", "");
+		cache = new StatementCache(4);
+		key = new StatementCache.Key(SQL, ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY, -1);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		cache.close();
+		connection.close();
+	}
+
+	/**
+	 * Statement whose driver does not implement the large max rows methods,
+	 * as with pgjdbc.
+	 */
+	private static PreparedStatement withoutLargeMaxRows(final PreparedStatement statement) {
+		return (PreparedStatement) Proxy.newProxyInstance(
+			PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class },
+			new InvocationHandler() {
+				@Override
+				public Object invoke(final Object proxy, final Method method,
+						final Object[] args) throws Throwable {
+					if (method.getName().endsWith("LargeMaxRows")) {
+						throw new SQLFeatureNotSupportedException(method.getName());
+					}
+					try {
+						return method.invoke(statement, args);
+					}
+					catch (final InvocationTargetException e) {
+						throw e.getCause();
+					}
+				}
+			});
+	}
+
+	public void testResetSettingsAndReturnToCache() throws Exception {
+		final PreparedStatement statement = withoutLargeMaxRows(connection.prepareStatement(SQL));
+		final int fetchSize = statement.getFetchSize();
+		final int queryTimeout = statement.getQueryTimeout();
+		final PooledPreparedStatement pooled = new PooledPreparedStatement(connection, statement,
+				cache, key);
+		pooled.setMaxRows(5);
+		pooled.setFetchSize(3);
+		pooled.setQueryTimeout(queryTimeout + 10);
+		pooled.executeQuery().close();
+		pooled.close();
+		assertTrue(pooled.isClosed());
+		assertEquals("cached", 1, cache.getSize());
+		final PreparedStatement cached = cache.take(key);
+		assertSame(statement, cached);
+		assertFalse(cached.isClosed());
+		assertEquals(0, cached.getMaxRows());
+		assertEquals(fetchSize, cached.getFetchSize());
+		assertEquals(queryTimeout, cached.getQueryTimeout());
+		cached.close();
+	}
+
+	public void testLargeMaxRowsIsReset() throws Exception {
+		final PreparedStatement statement = connection.prepareStatement(SQL);
+		final PooledPreparedStatement pooled = new PooledPreparedStatement(connection, statement,
+				cache, key);
+		pooled.setLargeMaxRows(5L);
+		pooled.close();
+		assertEquals("cached", 1, cache.getSize());
+		final PreparedStatement cached = cache.take(key);
+		assertEquals(0L, cached.getLargeMaxRows());
+		cached.close();
+	}
+
+	public void testUnresettableSettingClosesStatement() throws Exception {
+		final PreparedStatement statement = connection.prepareStatement(SQL);
+		final PooledPreparedStatement pooled = new PooledPreparedStatement(connection, statement,
+				cache, key);
+		pooled.setCursorName("c");
+		pooled.close();
+		assertEquals(0, cache.getSize());
+		assertTrue(statement.isClosed());
+	}
+
+	public void testResultSetClosesPooledStatement() throws Exception {
+		final PreparedStatement statement = connection.prepareStatement(SQL);
+		final PooledPreparedStatement pooled = new PooledPreparedStatement(connection, statement,
+				cache, key);
+		final ResultSet resultSet = pooled.executeQuery();
+		assertSame(pooled, resultSet.getStatement());
+		resultSet.getStatement().close();
+		assertTrue(pooled.isClosed());
+		assertFalse(statement.isClosed());
+		assertEquals("cached", 1, cache.getSize());
+	}
+}
@@ -0,0 +1,110 @@
+package com.winepos.birt.util;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+public class ReplicaRouterTest extends TestCase {
+	private static final long RETRY_INTERVAL = 1000L;
+	private Configuration configuration;
+	private ReplicaRouter router;
+
+	@Override
+	protected void setUp() throws Exception {
+		FlakyDriver.register();
+		final Properties properties = new Properties();
+		properties.setProperty("db.driver", "org.h2.Driver");
+		properties.setProperty("db.url", FlakyDriver.PREFIX + getName());
+		properties.setProperty("db.username", "sa");
+		properties.setProperty("db.password", "");
+		properties.setProperty("db.pool.jmxName", getName());
+		properties.setProperty("db.pool.connectRetries", "0");
+		properties.setProperty("db.replica.urls", FlakyDriver.PREFIX + getName() + "_r1, "
+			+ FlakyDriver.PREFIX + getName() + "_r2");
+		properties.setProperty("db.replica.retryInterval", String.valueOf(RETRY_INTERVAL));
+		properties.setProperty("resources", new File(".").getAbsolutePath());
+		configuration = Configuration.load(properties, null);
+		router = configuration.getReplicaRouter();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		router.shutdown();
+		configuration.getPool().shutdown();
+		FlakyDriver.deregister();
+	}
+
+	private static String getDatabaseName(final Connection connection) throws Exception {
+		final Statement statement = connection.createStatement();
+		try {
+			final ResultSet resultSet = statement.executeQuery("select database()");
+			resultSet.next();
+			return resultSet.getString(1);
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	public void testDownReplicaIsSkipped() throws Exception {
+		FlakyDriver.down.add(getName() + "_r1");
+		for (int i = 0; i < 4; i++) {
+			final Connection connection = router.getConnection();
+			assertNotNull(connection);
+			try {
+				assertTrue(connection.isReadOnly());
+				assertEquals((getName() + "_r2").toUpperCase(), getDatabaseName(connection));
+			}
+			finally {
+				connection.close();
+			}
+		}
+		assertNull("the down replica has no pool", router.getPools().get(0));
+		assertTrue(router.toString().contains("(down)"));
+	}
+
+	/**
+	 * A replica that failed is not tried again until the retry interval has
+	 * passed, even if it has come back.
+	 */
+	public void testDownReplicaIsRetriedAfterInterval() throws Exception {
+		FlakyDriver.down.add(getName() + "_r1");
+		final long start = System.currentTimeMillis();
+		router.getConnection().close();
+		FlakyDriver.down.clear();
+		final int attempts = FlakyDriver.attempts.get();
+		for (int i = 0; i < 4; i++) {
+			router.getConnection().close();
+		}
+		if (System.currentTimeMillis() - start < RETRY_INTERVAL) {
+			assertNull("retried early", router.getPools().get(0));
+			assertEquals(attempts, FlakyDriver.attempts.get());
+		}
+		Thread.sleep(RETRY_INTERVAL + 100L);
+		for (int i = 0; i < 2; i++) {
+			router.getConnection().close();
+		}
+		assertNotNull("retried", router.getPools().get(0));
+	}
+
+	/**
+	 * With every replica down, read connections come from the primary.
+	 */
+	public void testAllReplicasDownFallsBackToPrimary() throws Exception {
+		FlakyDriver.down.add(getName() + "_r1");
+		FlakyDriver.down.add(getName() + "_r2");
+		assertNull(router.getConnection());
+		final Connection connection = new DbInterface(configuration).getReadConnection();
+		try {
+			assertEquals(getName().toUpperCase(), getDatabaseName(connection));
+			assertEquals(1, configuration.getPool().getOpenConnectionCount());
+		}
+		finally {
+			connection.close();
+		}
+	}
+}
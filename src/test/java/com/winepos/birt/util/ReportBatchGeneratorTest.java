@@ -0,0 +1,76 @@
+package com.winepos.birt.util;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+public class ReportBatchGeneratorTest extends TestCase {
+	private Configuration configuration;
+
+	@Override
+	protected void setUp() throws Exception {
+		FlakyDriver.register();
+		final Properties properties = new Properties();
+		properties.setProperty("db.driver", "org.h2.Driver");
+		properties.setProperty("db.url", FlakyDriver.PREFIX + getName());
+		properties.setProperty("db.username", "sa");
+		properties.setProperty("db.password", "");
+		properties.setProperty("db.pool.jmxName", getName());
+		properties.setProperty("resources", new File(".").getAbsolutePath());
+		configuration = Configuration.load(properties, null);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		configuration.getPool().shutdown();
+		FlakyDriver.deregister();
+	}
+
+	public void testFileNamesDoNotCollide() {
+		final List<String> tableNames = Arrays.asList("\"PUBLIC\".\"my table\"",
+			"\"PUBLIC\".\"my_table\"", "\"PUBLIC\".\"MY_TABLE\"", "\"PUBLIC\".\"other\"");
+		final Map<String, String> fileNames = ReportBatchGenerator.getFileNames(tableNames);
+		assertEquals(Arrays.asList("PUBLIC.my_table.rptdesign", "PUBLIC.my_table_2.rptdesign",
+			"PUBLIC.MY_TABLE_3.rptdesign", "PUBLIC.other.rptdesign"),
+			Arrays.asList(fileNames.values().toArray()));
+	}
+
+	public void testFoundTablesAreQuoted() throws Exception {
+		final Connection connection = configuration.getPool()
+				.getConnection(Connection.TRANSACTION_READ_COMMITTED, false, true);
+		try {
+			final Statement statement = connection.createStatement();
+			try {
+				statement.execute("create table \"my table\" (a int)");
+				statement.execute("create table \"Mixed\" (b int)");
+				statement.execute("create table plain (c int)");
+			}
+			finally {
+				statement.close();
+			}
+		}
+		finally {
+			connection.close();
+		}
+		final ReportBatchGenerator generator = new ReportBatchGenerator(configuration, null, 1);
+		final List<String> tableNames = generator.findTables("PUBLIC", null);
+		assertEquals(new HashSet<String>(Arrays.asList("\"PUBLIC\".\"my table\"",
+			"\"PUBLIC\".\"Mixed\"", "\"PUBLIC\".\"PLAIN\"")), new HashSet<String>(tableNames));
+		final DbInterface db = new DbInterface(configuration);
+		for (final String tableName : tableNames) {
+			assertEquals(1, db.probeTableMetadata(tableName).getColumns().size());
+		}
+	}
+
+	public void testQuote() {
+		assertEquals("\"a\"\"b\"", ReportBatchGenerator.quote("a\"b", "\""));
+		assertEquals("a", ReportBatchGenerator.quote("a", ""));
+	}
+}
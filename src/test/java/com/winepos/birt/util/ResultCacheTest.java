@@ -0,0 +1,292 @@
+package com.winepos.birt.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ResultCacheTest extends TestCase {
+	private static final String ROW = "'text', 1, 2, 1.5, 12.30, true,"
+		+ " TIMESTAMP '2024-02-03 04:05:06.123456789', DATE '2024-02-03', TIME '04:05:06',"
+		+ " X'0102', 3, 2.5, 4, '3ab3626f-bde2-4f51-a785-bb3ea83e7cc7',"
+		+ " TIMESTAMP WITH TIME ZONE '2024-02-03 04:05:06+02:00'";
+	private Connection connection;
+
+	@Override
+	protected void setUp() throws Exception {
+		connection = DriverManager.getConnection("jdbc:h2:mem:" + getName(), "sa", "");
+		final Statement statement = connection.createStatement();
+		try {
+			statement.execute("create table t (s varchar(20), i int, b bigint, d double,"
+				+ " n decimal(10, 2), z boolean, ts timestamp(9), dt date, tm time,"
+				+ " bin varbinary(10), sm smallint, r real, ti tinyint, u uuid,"
+				+ " tz timestamp with time zone)");
+			statement.execute("insert into t values (" + ROW + ")");
+			statement.execute("insert into t (s) values (null)");
+			statement.execute("insert into t (s) values ('\u00e9\u20ac')");
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		connection.close();
+	}
+
+	/**
+	 * Caches the rows of {@code sql} under {@code key}.
+	 */
+	private void put(final ResultCache cache, final ResultCache.Key key, final String sql,
+			final long ttl) throws SQLException {
+		final Statement statement = connection.createStatement();
+		try {
+			final ResultSet resultSet = statement.executeQuery(sql);
+			try {
+				final ResultCache.Writer writer = cache.newWriter(resultSet);
+				while (resultSet.next()) {
+					writer.add(resultSet);
+				}
+				cache.put(key, writer, ttl);
+			}
+			finally {
+				resultSet.close();
+			}
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	private static List<Object[]> read(final ResultSet resultSet, final boolean strings)
+			throws SQLException {
+		final int columnCount = resultSet.getMetaData().getColumnCount();
+		final List<Object[]> rows = new ArrayList<Object[]>();
+		while (resultSet.next()) {
+			final Object[] row = new Object[columnCount];
+			for (int i = 0; i < columnCount; i++) {
+				row[i] = strings ? resultSet.getString(i + 1) : resultSet.getObject(i + 1);
+				if (row[i] == null) {
+					assertTrue(resultSet.wasNull());
+				}
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	private List<Object[]> query(final String sql, final boolean strings)
+			throws SQLException {
+		final Statement statement = connection.createStatement();
+		try {
+			return read(statement.executeQuery(sql), strings);
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	private static List<Object[]> readCached(final ResultCache cache,
+			final ResultCache.Key key, final boolean strings) throws SQLException {
+		final ResultSet cached = cache.get(key);
+		assertNotNull("cached", cached);
+		try {
+			return read(cached, strings);
+		}
+		finally {
+			cached.close();
+		}
+	}
+
+	private static void assertRowsEqual(final List<Object[]> expected,
+			final List<Object[]> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertTrue("row " + i + ": " + Arrays.deepToString(actual.get(i)),
+				Arrays.deepEquals(expected.get(i), actual.get(i)));
+		}
+	}
+
+	public void testRoundTrip() throws Exception {
+		final ResultCache cache = new ResultCache(1024L * 1024L, 0L);
+		final String sql = "select * from t";
+		final ResultCache.Key key = new ResultCache.Key("t", sql, null);
+		put(cache, key, sql, 60000L);
+		assertRowsEqual(query(sql, false), readCached(cache, key, false));
+		assertRowsEqual(query(sql, true), readCached(cache, key, true));
+		final ResultSet cached = cache.get(key);
+		try {
+			final ResultSetMetaData metaData = cached.getMetaData();
+			assertEquals(15, metaData.getColumnCount());
+			assertEquals("TS", metaData.getColumnLabel(7));
+			assertEquals(Types.TIMESTAMP, metaData.getColumnType(7));
+			assertTrue(cached.next());
+			// The driver's own formats, not Boolean.toString() and
+			// OffsetDateTime.toString().
+			assertEquals("TRUE", cached.getString("z"));
+			assertEquals("2024-02-03 04:05:06+02", cached.getString("tz"));
+			assertEquals(123456789, cached.getTimestamp("ts").getNanos());
+			assertEquals(1.5f, cached.getFloat("d"), 0.0f);
+		}
+		finally {
+			cached.close();
+		}
+	}
+
+	/**
+	 * Drivers that return Short and Byte for SMALLINT and TINYINT.
+	 */
+	public void testShortAndByte() throws Exception {
+		final Statement statement = connection.createStatement();
+		try {
+			final ResultSet resultSet = narrowing(statement.executeQuery("select sm, ti from t"));
+			final ResultCache cache = new ResultCache(1024L * 1024L, 0L);
+			final ResultCache.Key key = new ResultCache.Key("t", "select sm, ti from t", null);
+			final ResultCache.Writer writer = cache.newWriter(resultSet);
+			while (resultSet.next()) {
+				writer.add(resultSet);
+			}
+			cache.put(key, writer, 60000L);
+			final List<Object[]> rows = readCached(cache, key, false);
+			assertEquals(Short.valueOf((short) 3), rows.get(0)[0]);
+			assertEquals(Byte.valueOf((byte) 4), rows.get(0)[1]);
+			assertNull(rows.get(1)[0]);
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	private static ResultSet narrowing(final ResultSet resultSet) {
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+			new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+				@Override
+				public Object invoke(final Object proxy, final Method method,
+						final Object[] args) throws Throwable {
+					if (method.getName().equals("getObject") && args.length == 1
+						&& args[0] instanceof Integer) {
+						final int column = ((Integer) args[0]).intValue();
+						final Object value = resultSet.getObject(column);
+						if (value != null) {
+							switch (resultSet.getMetaData().getColumnType(column)) {
+							case Types.SMALLINT:
+								return Short.valueOf(((Number) value).shortValue());
+							case Types.TINYINT:
+								return Byte.valueOf(((Number) value).byteValue());
+							default:
+								break;
+							}
+						}
+						return value;
+					}
+					try {
+						return method.invoke(resultSet, args);
+					}
+					catch (final InvocationTargetException e) {
+						throw e.getCause();
+					}
+				}
+			});
+	}
+
+	public void testTtlExpiry() throws Exception {
+		final ResultCache cache = new ResultCache(1024L * 1024L, 0L);
+		final String sql = "select s from t";
+		final ResultCache.Key key = new ResultCache.Key("t", sql, null);
+		put(cache, key, sql, 100L);
+		cache.get(key).close();
+		Thread.sleep(150L);
+		assertNull(cache.get(key));
+		assertEquals(1L, cache.getExpirations());
+		assertEquals(1L, cache.getHits());
+		assertEquals(1L, cache.getMisses());
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0L, cache.getBytes());
+	}
+
+	public void testTtlByName() {
+		final ResultCache cache = new ResultCache(1024L, 100L);
+		cache.setTtl("reports", 5000L);
+		cache.setTtl("live", 0L);
+		assertEquals(5000L, cache.getTtl("reports"));
+		assertEquals(0L, cache.getTtl("live"));
+		assertEquals(100L, cache.getTtl("other"));
+		assertEquals("an empty budget caches nothing", 0L,
+			new ResultCache(0L, 100L).getTtl("other"));
+	}
+
+	public void testLeastRecentlyUsedEvictedOverBudget() throws Exception {
+		final String sql = "select i from t";
+		final ResultCache.Key a = new ResultCache.Key("a", sql, null);
+		final ResultCache.Key b = new ResultCache.Key("b", sql, null);
+		final ResultCache.Key c = new ResultCache.Key("c", sql, null);
+		final ResultCache probe = new ResultCache(1024L * 1024L, 0L);
+		put(probe, a, sql, 60000L);
+		final long size = probe.getBytes();
+		// Room for two entries.
+		final ResultCache cache = new ResultCache(size * 5L / 2L, 0L);
+		put(cache, a, sql, 60000L);
+		put(cache, b, sql, 60000L);
+		assertEquals(2L * size, cache.getBytes());
+		cache.get(a).close();
+		put(cache, c, sql, 60000L);
+		assertEquals(2, cache.getEntryCount());
+		assertEquals(1L, cache.getEvictions());
+		assertTrue(cache.getBytes() <= cache.getMaxBytes());
+		assertNull("least recently used", cache.get(b));
+		assertNotNull(cache.get(a));
+		assertNotNull(cache.get(c));
+	}
+
+	public void testResultOverEntryLimitRejected() throws Exception {
+		final String sql = "select * from t";
+		final ResultCache.Key key = new ResultCache.Key("t", sql, null);
+		final ResultCache cache = new ResultCache(256L, 0L);
+		put(cache, key, sql, 60000L);
+		assertEquals(1L, cache.getRejections());
+		assertEquals(0, cache.getEntryCount());
+		assertNull(cache.get(key));
+	}
+
+	public void testInvalidate() throws Exception {
+		final ResultCache cache = new ResultCache(1024L * 1024L, 0L);
+		final String sql = "select s from t";
+		put(cache, new ResultCache.Key("a", sql, null), sql, 60000L);
+		put(cache, new ResultCache.Key("b", sql, null), sql, 60000L);
+		cache.invalidate("a");
+		assertNull(cache.get(new ResultCache.Key("a", sql, null)));
+		assertNotNull(cache.get(new ResultCache.Key("b", sql, null)));
+		cache.invalidateAll();
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0L, cache.getBytes());
+	}
+
+	public void testKeyCopiesMutableParameters() {
+		final Date date = new Date(1000L);
+		final byte[] bytes = { 1, 2 };
+		final Object[] parameters = { date, bytes, "x" };
+		final ResultCache.Key key = new ResultCache.Key("q", "select ?", parameters);
+		date.setTime(2000L);
+		bytes[0] = 9;
+		parameters[2] = "y";
+		final ResultCache.Key same = new ResultCache.Key("q", "select ?",
+				new Object[] { new Date(1000L), new byte[] { 1, 2 }, "x" });
+		assertEquals(same, key);
+		assertEquals(same.hashCode(), key.hashCode());
+		assertFalse(key.equals(new ResultCache.Key("q", "select ?", parameters)));
+	}
+}
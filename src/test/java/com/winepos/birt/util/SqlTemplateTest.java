@@ -0,0 +1,64 @@
+package com.winepos.birt.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class SqlTemplateTest extends TestCase {
+	private static Map<String, Object> replacements(final String... pairs) {
+		final Map<String, Object> replacements = new HashMap<String, Object>();
+		for (int i = 0; i < pairs.length; i += 2) {
+			replacements.put(pairs[i], pairs[i + 1]);
+		}
+		return replacements;
+	}
+
+	public void testFill() {
+		final SqlTemplate template = new SqlTemplate("select {col} from t where a = {a}"
+			+ " and b = {a}");
+		assertEquals(Arrays.asList("col", "a", "a"), template.getKeys());
+		assertEquals("select x from t where a = 1 and b = 1",
+			template.fill(replacements("col", "x", "a", "1")));
+	}
+
+	public void testUnknownKeysAreLeftAsTheyAre() {
+		final SqlTemplate template = new SqlTemplate("select {a}, {b} from t");
+		assertEquals("select 1, {b} from t", template.fill(replacements("a", "1")));
+		assertEquals("select {a}, {b} from t", template.fill(replacements("c", "1")));
+		assertEquals("select {a}, {b} from t", template.fill(null));
+	}
+
+	public void testUnclosedBrace() {
+		final SqlTemplate template = new SqlTemplate("select {a from t where b = {b}");
+		assertEquals(Arrays.asList("b"), template.getKeys());
+		assertEquals("select {a from t where b = 2",
+			template.fill(replacements("a", "1", "b", "2")));
+		assertEquals(Collections.emptyList(), new SqlTemplate("select {a").getKeys());
+	}
+
+	/**
+	 * Only the innermost braces are a placeholder.
+	 */
+	public void testNestedBraces() {
+		final SqlTemplate template = new SqlTemplate("select '{a{b}}' from t");
+		assertEquals(Arrays.asList("b"), template.getKeys());
+		assertEquals("select '{ax}' from t", template.fill(replacements("a", "y", "b", "x")));
+	}
+
+	public void testPlaceholdersDoNotSpanLines() {
+		final SqlTemplate template = new SqlTemplate("select {a\n} from t where\r\n"
+			+ "c = {c}");
+		assertEquals(Arrays.asList("c"), template.getKeys());
+		assertEquals("select {a\n} from t where\r\nc = 3",
+			template.fill(replacements("a", "1", "c", "3")));
+	}
+
+	public void testEmptyBraces() {
+		final SqlTemplate template = new SqlTemplate("select '{}' from t");
+		assertEquals(Collections.emptyList(), template.getKeys());
+		assertEquals("select '{}' from t", template.fill(replacements("", "x")));
+	}
+}